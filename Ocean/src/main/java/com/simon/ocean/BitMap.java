@@ -1,5 +1,12 @@
 package com.simon.ocean;
 
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntConsumer;
+
 /**
  * 该工具类算是布隆过滤器在数据为int时候的简化和优化版，内存可以更小
  * 功能：
@@ -7,14 +14,21 @@ package com.simon.ocean;
  *  2.清理数据
  *  3.判断存在否
  *  4.插入的数据的个数
+ *  5.内存占用的统计
+ *  6.多个BitMap之间的与、或、异或、差集运算，按照long逐字计算
+ *  7.遍历、排名（rank）、选择（select）和范围内个数的统计
+ * 数据按照分段存储，每段65536个long（512KB），段在第一次写入的时候才分配；插入的数据超过最大值的时候自动扩容，不会丢失已有的数据
+ * 注意：如果数据比较稀疏，请使用压缩版的{@link RoaringBitMap}；只支持非负的int，long类型的数据请使用{@link LongBitMap}
+ * 该类非线程安全，多线程并发写入请使用{@link ConcurrentBitMap}
+ * 需要持久化、重启后快速加载的场景请使用基于内存映射文件的{@link MappedBitMap}
  * @author zhouzhenyong
  * @since 2018/11/3 下午7:02
  */
 public class BitMap {
 
-    private final static int SHIFT = 5;
+    private final static int SHIFT = 6;
     /**
-     * int占用bit大小，32
+     * long占用bit大小，64
      */
     private final static int BITWORD = 1 << SHIFT;
     /**
@@ -22,21 +36,53 @@ public class BitMap {
      */
     private final static int MASK = BITWORD - 1;
     /**
-     * 该bitMap可以存储的最大的数据，为2^32次方，如果采用int作为数组，则为2^27个int即128 * 2^20
+     * 该bitMap可以存储的最大的数据，为2^32次方，如果采用long作为数组，则为2^26个long即64 * 2^20
      */
     private final static int M = 1024 * 1024;
     /**
-     * flag分配的个数
+     * 每段long个数的位数，每段2^16个long，即512KB
+     */
+    private final static int SEGMENT_SHIFT = 16;
+    private final static int SEGMENT_WORDS = 1 << SEGMENT_SHIFT;
+    private final static int SEGMENT_MASK = SEGMENT_WORDS - 1;
+    /**
+     * flag分配的个数，即当前的容量（long的个数）
      */
     private int dataSize;
     /**
-     * 数据标记数组
+     * 数据标记数组，按段存储，为null的段表示全为0；除了最后一段，每段都是SEGMENT_WORDS个long
+     */
+    private long[][] segments = new long[0][];
+    /**
+     * 数据的个数，插入和删除的时候同步维护
+     */
+    private int cardinality;
+    /**
+     * 排名索引的采样间隔：每16个long（1024位）记录一次之前的元素个数
+     */
+    private final static int RANK_SAMPLE_SHIFT = 4;
+    /**
+     * 排名索引：rankIndex[i]表示前 i * 16 个long中元素的个数，数据有修改时置空，在rank/select时候懒加载重建
      */
-    private int[] flags;
+    private int[] rankIndex;
 
     private static volatile BitMap instance;
     private BitMap(){}
 
+    /**
+     * 创建独立的BitMap，用于需要多个BitMap的场景，比如按照用户分群每群一个
+     * @param maxValue 可以校验的最大的数据
+     */
+    public BitMap(int maxValue){
+        setMaxValue(maxValue);
+    }
+
+    private BitMap(int dataSize, long[][] segments){
+        this.dataSize = dataSize;
+        this.segments = segments;
+        this.cardinality = countWords(0, dataSize);
+    }
+
     public static BitMap getInstance(){
         if(null == instance){
             synchronized (BitMap.class){
@@ -50,29 +96,45 @@ public class BitMap {
     }
 
     /**
-     * 设置数据的可以存储的最大的值
-     * 注意：该工具没有做旧数据到新数据的迁移，一旦执行则旧的数据会被清理掉
+     * 设置数据的可以存储的最大的值，已有的数据会保留，如果变小，则超过最大值的数据会被清理掉
      * @param size 可以校验的最大的数据
      */
     public void setMaxValue(int size){
+        int newSize;
         if ((size & BITWORD - 1) == 0){
-            dataSize = size / BITWORD;
-            flags = new int[dataSize];
+            newSize = size / BITWORD;
         }else{
-            dataSize = size / BITWORD + 1;
-            flags = new int[dataSize];
+            newSize = size / BITWORD + 1;
+        }
+        if (newSize >= dataSize) {
+            ensureSize(newSize);
+        } else {
+            resize(newSize);
+            cardinality = countWords(0, dataSize);
+            rankIndex = null;
         }
     }
 
     /**
-     * 保存数据
+     * 保存数据，超过最大值的时候自动扩容
      */
     public void insert(int data) {
-        int index = data >> SHIFT;
-        if (index >= dataSize){
+        if (data < 0){
             throw new SizeOutOfBoundsException();
         }
-        flags[index] |= 1 << (data & MASK);
+        int index = data >> SHIFT;
+        if (index >= dataSize) {
+            // 按照1.5倍扩容，避免顺序插入的时候频繁扩容
+            ensureSize(Math.max(index + 1, dataSize + (dataSize >> 1)));
+        }
+        long[] segment = segmentForWrite(index >> SEGMENT_SHIFT);
+        int offset = index & SEGMENT_MASK;
+        long before = segment[offset];
+        segment[offset] = before | (1L << (data & MASK));
+        if (before != segment[offset]) {
+            cardinality++;
+            rankIndex = null;
+        }
     }
 
     /**
@@ -87,62 +149,642 @@ public class BitMap {
      * 清理数据
      */
     public void delete(int data) {
-        int index = data >> SHIFT;
-        if (index >= dataSize){
+        if (data < 0){
             throw new SizeOutOfBoundsException();
         }
-        flags[index] &= ~(1 << (data & MASK));
+        int index = data >> SHIFT;
+        if (index >= dataSize) {
+            return;
+        }
+        long[] segment = segments[index >> SEGMENT_SHIFT];
+        if (null == segment) {
+            return;
+        }
+        int offset = index & SEGMENT_MASK;
+        long before = segment[offset];
+        segment[offset] = before & ~(1L << (data & MASK));
+        if (before != segment[offset]) {
+            cardinality--;
+            rankIndex = null;
+        }
     }
 
     /**
-     * 返回bitmap中元素的个数
+     * 返回bitmap中元素的个数，个数在插入和删除的时候已经维护好了，这里直接返回
      *
      * @return bitmap中元素的个数
      */
     public int count() {
+        return cardinality;
+    }
+
+    /**
+     * 通过fork-join并行重新统计所有的long中1的个数，并刷新维护的个数，用于数据很大时候的校验
+     *
+     * @return bitmap中元素的个数
+     */
+    public int parallelCount() {
+        cardinality = ForkJoinPool.commonPool().invoke(new CountTask(segments, 0, segments.length));
+        return cardinality;
+    }
+
+    /**
+     * 释放内存：全为0的段会被释放，容量缩小到最大的数据所在的位置
+     */
+    public void trim() {
+        int last = -1;
+        for (int s = segments.length - 1; s >= 0; s--) {
+            long[] segment = segments[s];
+            if (null == segment) {
+                continue;
+            }
+            int lastWord = -1;
+            for (int i = segment.length - 1; i >= 0; i--) {
+                if (segment[i] != 0) {
+                    lastWord = i;
+                    break;
+                }
+            }
+            if (lastWord < 0) {
+                segments[s] = null;
+            } else if (last < 0) {
+                last = (s << SEGMENT_SHIFT) + lastWord;
+            }
+        }
+        resize(last + 1);
+        rankIndex = null;
+    }
+
+    /**
+     * 返回大于等于from的第一个存在的数据，跳过全为0的long和未分配的段
+     *
+     * @return 不存在则返回-1
+     */
+    public int nextSetBit(int from) {
+        if (from < 0) {
+            from = 0;
+        }
+        int index = from >> SHIFT;
+        if (index >= dataSize) {
+            return -1;
+        }
+        long word = word(index) & (-1L << (from & MASK));
+        while (true) {
+            if (word != 0) {
+                return (index << SHIFT) + Long.numberOfTrailingZeros(word);
+            }
+            index++;
+            while (index < dataSize && null == segments[index >> SEGMENT_SHIFT]) {
+                index = ((index >> SEGMENT_SHIFT) + 1) << SEGMENT_SHIFT;
+            }
+            if (index >= dataSize) {
+                return -1;
+            }
+            word = segments[index >> SEGMENT_SHIFT][index & SEGMENT_MASK];
+        }
+    }
+
+    /**
+     * 返回小于等于from的最后一个存在的数据，跳过全为0的long和未分配的段
+     *
+     * @return 不存在则返回-1
+     */
+    public int previousSetBit(int from) {
+        if (from < 0) {
+            return -1;
+        }
+        int index = from >> SHIFT;
+        long word;
+        if (index >= dataSize) {
+            index = dataSize - 1;
+            word = index < 0 ? 0 : word(index);
+        } else {
+            word = word(index) & (-1L >>> (MASK - (from & MASK)));
+        }
+        while (index >= 0) {
+            if (word != 0) {
+                return (index << SHIFT) + MASK - Long.numberOfLeadingZeros(word);
+            }
+            index--;
+            while (index >= 0 && null == segments[index >> SEGMENT_SHIFT]) {
+                index = (index >> SEGMENT_SHIFT << SEGMENT_SHIFT) - 1;
+            }
+            if (index < 0) {
+                break;
+            }
+            word = segments[index >> SEGMENT_SHIFT][index & SEGMENT_MASK];
+        }
+        return -1;
+    }
+
+    /**
+     * 从小到大遍历所有的数据，跳过全为0的long和未分配的段
+     */
+    public void forEach(IntConsumer consumer) {
+        for (int s = 0; s < segments.length; s++) {
+            long[] segment = segments[s];
+            if (null == segment) {
+                continue;
+            }
+            int base = s << SEGMENT_SHIFT;
+            for (int i = 0; i < segment.length; i++) {
+                long word = segment[i];
+                while (word != 0) {
+                    consumer.accept(((base + i) << SHIFT) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * 从小到大遍历所有数据的迭代器，遍历过程中不可修改数据
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+
+            private int next = nextSetBit(0);
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public int nextInt() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                int current = next;
+                next = current == Integer.MAX_VALUE ? -1 : nextSetBit(current + 1);
+                return current;
+            }
+        };
+    }
+
+    /**
+     * 排名：小于等于data的元素的个数
+     */
+    public int rank(int data) {
+        if (data < 0) {
+            return 0;
+        }
+        return rankBefore(data + 1L);
+    }
+
+    /**
+     * 选择：返回从小到大排第k个的数据（k从0开始）
+     *
+     * @return 不存在则返回-1
+     */
+    public int select(int k) {
+        if (k < 0 || k >= cardinality) {
+            return -1;
+        }
+        int[] index = getRankIndex();
+        // 二分找到最后一个小于等于k的采样点
+        int low = 0;
+        int high = index.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (index[middle] <= k) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        int remain = k - index[low];
+        for (int i = low << RANK_SAMPLE_SHIFT; i < dataSize; i++) {
+            long word = word(i);
+            int bits = Long.bitCount(word);
+            if (remain < bits) {
+                for (int j = 0; j < remain; j++) {
+                    word &= word - 1;
+                }
+                return (i << SHIFT) + Long.numberOfTrailingZeros(word);
+            }
+            remain -= bits;
+        }
+        return -1;
+    }
+
+    /**
+     * 范围[from, to)内元素的个数
+     */
+    public int rangeCardinality(int from, int to) {
+        if (from >= to) {
+            return 0;
+        }
+        return rankBefore(to) - rankBefore(from);
+    }
+
+    /**
+     * 当前占用的内存大小（估算值），只计算已经分配的段，可与{@link RoaringBitMap#memoryUsage()}对比
+     *
+     * @return 字节数
+     */
+    public long memoryUsage() {
+        long bytes = 16 + segments.length * 4L;
+        for (long[] segment : segments) {
+            if (null != segment) {
+                bytes += 16 + segment.length * 8L;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 与运算（交集），返回新的BitMap，大小为两者中较小的那个
+     */
+    public static BitMap and(BitMap a, BitMap b) {
+        int size = Math.min(a.dataSize, b.dataSize);
+        long[][] result = new long[segmentCount(size)][];
+        for (int s = 0; s < result.length; s++) {
+            long[] sa = a.segments[s];
+            long[] sb = b.segments[s];
+            if (null != sa && null != sb) {
+                long[] segment = new long[segmentLength(s, size)];
+                for (int i = 0; i < segment.length; i++) {
+                    segment[i] = sa[i] & sb[i];
+                }
+                result[s] = segment;
+            }
+        }
+        return new BitMap(size, result);
+    }
+
+    /**
+     * 或运算（并集），返回新的BitMap，大小为两者中较大的那个
+     */
+    public static BitMap or(BitMap a, BitMap b) {
+        int size = Math.max(a.dataSize, b.dataSize);
+        long[][] result = new long[segmentCount(size)][];
+        for (int s = 0; s < result.length; s++) {
+            long[] sa = a.segment(s);
+            long[] sb = b.segment(s);
+            if (null != sa || null != sb) {
+                long[] segment = new long[segmentLength(s, size)];
+                if (null != sa) {
+                    System.arraycopy(sa, 0, segment, 0, sa.length);
+                }
+                if (null != sb) {
+                    for (int i = 0; i < sb.length; i++) {
+                        segment[i] |= sb[i];
+                    }
+                }
+                result[s] = segment;
+            }
+        }
+        return new BitMap(size, result);
+    }
+
+    /**
+     * 异或运算（对称差集），返回新的BitMap，大小为两者中较大的那个
+     */
+    public static BitMap xor(BitMap a, BitMap b) {
+        int size = Math.max(a.dataSize, b.dataSize);
+        long[][] result = new long[segmentCount(size)][];
+        for (int s = 0; s < result.length; s++) {
+            long[] sa = a.segment(s);
+            long[] sb = b.segment(s);
+            if (null != sa || null != sb) {
+                long[] segment = new long[segmentLength(s, size)];
+                if (null != sa) {
+                    System.arraycopy(sa, 0, segment, 0, sa.length);
+                }
+                if (null != sb) {
+                    for (int i = 0; i < sb.length; i++) {
+                        segment[i] ^= sb[i];
+                    }
+                }
+                result[s] = segment;
+            }
+        }
+        return new BitMap(size, result);
+    }
+
+    /**
+     * 差集运算：在a中但是不在b中，返回新的BitMap，大小与a相同
+     */
+    public static BitMap andNot(BitMap a, BitMap b) {
+        long[][] result = new long[a.segments.length][];
+        for (int s = 0; s < result.length; s++) {
+            long[] sa = a.segments[s];
+            if (null != sa) {
+                long[] segment = sa.clone();
+                long[] sb = b.segment(s);
+                if (null != sb) {
+                    int length = Math.min(segment.length, sb.length);
+                    for (int i = 0; i < length; i++) {
+                        segment[i] &= ~sb[i];
+                    }
+                }
+                result[s] = segment;
+            }
+        }
+        return new BitMap(a.dataSize, result);
+    }
+
+    /**
+     * 与运算，结果直接保存到当前的BitMap中
+     */
+    public void andWith(BitMap other) {
+        for (int s = 0; s < segments.length; s++) {
+            long[] sa = segments[s];
+            if (null == sa) {
+                continue;
+            }
+            long[] sb = other.segment(s);
+            if (null == sb) {
+                segments[s] = null;
+                continue;
+            }
+            int length = Math.min(sa.length, sb.length);
+            for (int i = 0; i < length; i++) {
+                sa[i] &= sb[i];
+            }
+            Arrays.fill(sa, length, sa.length, 0L);
+        }
+        cardinality = countWords(0, dataSize);
+        rankIndex = null;
+    }
+
+    /**
+     * 或运算，结果直接保存到当前的BitMap中，如果other更大，则当前的BitMap会扩容到与other相同
+     */
+    public void orWith(BitMap other) {
+        ensureSize(other.dataSize);
+        for (int s = 0; s < other.segments.length; s++) {
+            long[] sb = other.segments[s];
+            if (null != sb) {
+                long[] sa = segmentForWrite(s);
+                for (int i = 0; i < sb.length; i++) {
+                    sa[i] |= sb[i];
+                }
+            }
+        }
+        cardinality = countWords(0, dataSize);
+        rankIndex = null;
+    }
+
+    /**
+     * 异或运算，结果直接保存到当前的BitMap中，如果other更大，则当前的BitMap会扩容到与other相同
+     */
+    public void xorWith(BitMap other) {
+        ensureSize(other.dataSize);
+        for (int s = 0; s < other.segments.length; s++) {
+            long[] sb = other.segments[s];
+            if (null != sb) {
+                long[] sa = segmentForWrite(s);
+                for (int i = 0; i < sb.length; i++) {
+                    sa[i] ^= sb[i];
+                }
+            }
+        }
+        cardinality = countWords(0, dataSize);
+        rankIndex = null;
+    }
+
+    /**
+     * 差集运算，结果直接保存到当前的BitMap中
+     */
+    public void andNotWith(BitMap other) {
+        for (int s = 0; s < segments.length; s++) {
+            long[] sa = segments[s];
+            long[] sb = other.segment(s);
+            if (null != sa && null != sb) {
+                int length = Math.min(sa.length, sb.length);
+                for (int i = 0; i < length; i++) {
+                    sa[i] &= ~sb[i];
+                }
+            }
+        }
+        cardinality = countWords(0, dataSize);
+        rankIndex = null;
+    }
+
+    /**
+     * 交集的元素个数，不生成中间结果
+     */
+    public static int andCardinality(BitMap a, BitMap b) {
+        int count = Math.min(a.segments.length, b.segments.length);
         int cnt = 0;
-        for (int a : flags) {
-            cnt += count(a);
+        for (int s = 0; s < count; s++) {
+            long[] sa = a.segments[s];
+            long[] sb = b.segments[s];
+            if (null != sa && null != sb) {
+                int length = Math.min(sa.length, sb.length);
+                for (int i = 0; i < length; i++) {
+                    cnt += Long.bitCount(sa[i] & sb[i]);
+                }
+            }
         }
         return cnt;
     }
 
     /**
-     * 设置数据的可以存储的默认的最大值，为2^32次方，如果采用int作为数组，则除以32，则为2^27个int，即128 * 2^20，占内存512MB数据
+     * 并集的元素个数，不生成中间结果
+     */
+    public static int orCardinality(BitMap a, BitMap b) {
+        return a.cardinality + b.cardinality - andCardinality(a, b);
+    }
+
+    /**
+     * 对称差集的元素个数，不生成中间结果
+     */
+    public static int xorCardinality(BitMap a, BitMap b) {
+        return a.cardinality + b.cardinality - 2 * andCardinality(a, b);
+    }
+
+    /**
+     * 差集（在a中但是不在b中）的元素个数，不生成中间结果
+     */
+    public static int andNotCardinality(BitMap a, BitMap b) {
+        return a.cardinality - andCardinality(a, b);
+    }
+
+    /**
+     * 设置数据的可以存储的默认的最大值，为2^32次方，如果采用long作为数组，则除以64，则为2^26个long，即64 * 2^20，全部写满时占内存512MB数据
      */
     private void initMaxValue(){
-        dataSize = 128 * M;
-        flags = new int[dataSize];
+        ensureSize(64 * M);
+    }
+
+    /**
+     * 小于data的元素的个数：采样点的个数加上采样点之后最多16个long的个数
+     */
+    private int rankBefore(long data) {
+        if (data <= 0) {
+            return 0;
+        }
+        if (data >= (long) dataSize << SHIFT) {
+            return cardinality;
+        }
+        int wordIndex = (int) (data >> SHIFT);
+        int sample = wordIndex >> RANK_SAMPLE_SHIFT;
+        int cnt = getRankIndex()[sample] + countWords(sample << RANK_SAMPLE_SHIFT, wordIndex);
+        return cnt + Long.bitCount(word(wordIndex) & ((1L << (data & MASK)) - 1));
+    }
+
+    private int[] getRankIndex() {
+        int[] index = rankIndex;
+        if (null == index) {
+            index = new int[(dataSize >> RANK_SAMPLE_SHIFT) + 1];
+            int cnt = 0;
+            for (int s = 0; s < segments.length; s++) {
+                long[] segment = segments[s];
+                int base = s << SEGMENT_SHIFT;
+                int length = segmentLength(s, dataSize);
+                for (int i = 0; i < length; i++) {
+                    if ((i & ((1 << RANK_SAMPLE_SHIFT) - 1)) == 0) {
+                        index[(base + i) >> RANK_SAMPLE_SHIFT] = cnt;
+                    }
+                    if (null != segment) {
+                        cnt += Long.bitCount(segment[i]);
+                    }
+                }
+            }
+            if ((dataSize & ((1 << RANK_SAMPLE_SHIFT) - 1)) == 0) {
+                index[dataSize >> RANK_SAMPLE_SHIFT] = cnt;
+            }
+            rankIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * 扩容，保留原有的数据，新增的段不会立即分配
+     */
+    private void ensureSize(int size) {
+        if (size > dataSize) {
+            resize(size);
+        }
+    }
+
+    /**
+     * 调整容量：变大的时候补齐最后一段，变小的时候截断最后一段并释放多余的段
+     */
+    private void resize(int size) {
+        int count = segmentCount(size);
+        if (count != segments.length) {
+            segments = Arrays.copyOf(segments, count);
+        }
+        if (count > 0) {
+            long[] last = segments[count - 1];
+            int length = segmentLength(count - 1, size);
+            if (null != last && last.length != length) {
+                segments[count - 1] = Arrays.copyOf(last, length);
+            }
+        }
+        // 容量变大时，原来的最后一段变成了中间的段，需要补齐为完整的段
+        for (int s = 0; s < count - 1; s++) {
+            long[] segment = segments[s];
+            if (null != segment && segment.length != SEGMENT_WORDS) {
+                segments[s] = Arrays.copyOf(segment, SEGMENT_WORDS);
+            }
+        }
+        dataSize = size;
+    }
+
+    private static int segmentCount(int size) {
+        return (size + SEGMENT_MASK) >> SEGMENT_SHIFT;
+    }
+
+    /**
+     * 在容量为size的时候，第s段的long的个数
+     */
+    private static int segmentLength(int s, int size) {
+        return Math.min(SEGMENT_WORDS, size - (s << SEGMENT_SHIFT));
+    }
+
+    private long[] segment(int s) {
+        return s < segments.length ? segments[s] : null;
+    }
+
+    private long[] segmentForWrite(int s) {
+        long[] segment = segments[s];
+        if (null == segment) {
+            segment = new long[segmentLength(s, dataSize)];
+            segments[s] = segment;
+        }
+        return segment;
+    }
+
+    private long word(int index) {
+        long[] segment = segments[index >> SEGMENT_SHIFT];
+        return null == segment ? 0 : segment[index & SEGMENT_MASK];
     }
 
     /**
      * 返回某个数据的状态
      *
-     * @return 0或2^k,k表示在BitWord单元中的位置
+     * @return 0或2^k,k表示在BitWord单元中的位置，超过范围的数据返回0
      */
-    private int getIndex(int data) {
+    private long getIndex(int data) {
         int index = data >> SHIFT;
-        if (index >= dataSize){
-            return -1;
+        if (data < 0 || index >= dataSize){
+            return 0;
         }
-        return flags[data >> SHIFT] & (1 << (data & MASK));
+        return word(index) & (1L << (data & MASK));
     }
 
     /**
-     * 统计二进制几个1
-     *
-     * @param value 待统计的整数
+     * 统计[from, to)范围内的long中1的个数，Long.bitCount会被JIT编译为popcnt指令
      */
-    private int count(int value) {
-        int one = 0;
-        while (value != 0) {
-            one++;
-            value &= value - 1;
+    private int countWords(int from, int to) {
+        int cnt = 0;
+        int index = from;
+        while (index < to) {
+            int s = index >> SEGMENT_SHIFT;
+            int end = Math.min(to, (s + 1) << SEGMENT_SHIFT);
+            long[] segment = segments[s];
+            if (null != segment) {
+                for (int i = index & SEGMENT_MASK, last = ((end - 1) & SEGMENT_MASK); i <= last; i++) {
+                    cnt += Long.bitCount(segment[i]);
+                }
+            }
+            index = end;
+        }
+        return cnt;
+    }
+
+    /**
+     * 并行统计的子任务，按段拆分，每个叶子任务统计一段
+     */
+    private static class CountTask extends RecursiveTask<Integer> {
+
+        private final long[][] segments;
+        private final int from;
+        private final int to;
+
+        CountTask(long[][] segments, int from, int to) {
+            this.segments = segments;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from <= 1) {
+                int cnt = 0;
+                for (int s = from; s < to; s++) {
+                    if (null != segments[s]) {
+                        for (long word : segments[s]) {
+                            cnt += Long.bitCount(word);
+                        }
+                    }
+                }
+                return cnt;
+            }
+            int middle = (from + to) >>> 1;
+            CountTask left = new CountTask(segments, from, middle);
+            left.fork();
+            int right = new CountTask(segments, middle, to).compute();
+            return right + left.join();
         }
-        return one;
     }
 
-    public class SizeOutOfBoundsException extends ArrayIndexOutOfBoundsException{
+    public static class SizeOutOfBoundsException extends ArrayIndexOutOfBoundsException{
         SizeOutOfBoundsException(){
             super("数据超过最大值");
         }
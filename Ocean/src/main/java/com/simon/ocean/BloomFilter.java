@@ -0,0 +1,213 @@
+package com.simon.ocean;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.function.Function;
+
+/**
+ * 布隆过滤器，位数组的大小和哈希函数的个数通过{@link BloomFilterUtil}计算
+ * <p>
+ * 位数组采用long数组存储；哈希采用{@link MurmurHash3}计算出128位，拆分为h1和h2两个64位，
+ * 然后通过Kirsch-Mitzenmacher的双重哈希：h1 + i * h2 模拟出k个哈希函数，每个数据只需要计算一次哈希
+ * <p>
+ * 功能：
+ *  1.添加数据
+ *  2.批量添加数据
+ *  3.判断可能存在否
+ *  4.当前的误判率
+ *  5.写入文件，通过{@link MappedBloomFilter}映射后在多个进程间共享
+ * 注意：该类非线程安全
+ *
+ * @author shizi
+ * @since 2026-10-18 14:20:36
+ */
+public class BloomFilter<T> {
+
+    /**
+     * 默认的哈希种子
+     */
+    static final long DEFAULT_SEED = 0;
+    /**
+     * 位数组
+     */
+    private final long[] bits;
+    /**
+     * 位数组的大小：m
+     */
+    private final long bitSize;
+    /**
+     * 哈希函数的个数：k
+     */
+    private final int hashNum;
+    /**
+     * 哈希种子
+     */
+    private final long seed;
+    /**
+     * 对象转换为字节的函数
+     */
+    private final Function<? super T, byte[]> funnel;
+    /**
+     * 位数组中1的个数
+     */
+    private long bitCount;
+    /**
+     * 插入的数据的个数（插入后有位发生变化的才计数）
+     */
+    private long insertNum;
+
+    /**
+     * @param expectedInsertions 预计插入的数据个数：n
+     * @param fpp 期望的误判率：p
+     * @param funnel 对象转换为字节的函数
+     */
+    public BloomFilter(long expectedInsertions, double fpp, Function<? super T, byte[]> funnel) {
+        this(bitSize(expectedInsertions, fpp), hashNum(expectedInsertions, fpp), DEFAULT_SEED, funnel);
+    }
+
+    BloomFilter(long bitSize, int hashNum, long seed, Function<? super T, byte[]> funnel) {
+        this.bits = new long[Math.toIntExact((bitSize + 63) >>> 6)];
+        this.bitSize = (long) bits.length << 6;
+        this.hashNum = hashNum;
+        this.seed = seed;
+        this.funnel = funnel;
+    }
+
+    /**
+     * 字符串的布隆过滤器，按照UTF-8转换为字节
+     */
+    public static BloomFilter<CharSequence> create(long expectedInsertions, double fpp) {
+        return new BloomFilter<>(expectedInsertions, fpp, s -> s.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static <T> BloomFilter<T> create(long expectedInsertions, double fpp, Function<? super T, byte[]> funnel) {
+        return new BloomFilter<>(expectedInsertions, fpp, funnel);
+    }
+
+    /**
+     * 添加数据
+     *
+     * @return true：有位发生了变化，即数据之前一定不存在；false：数据可能已经存在
+     */
+    public boolean put(T object) {
+        long[] hash = MurmurHash3.hash128(funnel.apply(object), seed);
+        long combined = hash[0];
+        boolean changed = false;
+        for (int i = 0; i < hashNum; i++) {
+            long index = (combined & Long.MAX_VALUE) % bitSize;
+            long mask = 1L << index;
+            int wordIndex = (int) (index >>> 6);
+            if ((bits[wordIndex] & mask) == 0) {
+                bits[wordIndex] |= mask;
+                bitCount++;
+                changed = true;
+            }
+            combined += hash[1];
+        }
+        if (changed) {
+            insertNum++;
+        }
+        return changed;
+    }
+
+    /**
+     * 批量添加数据
+     *
+     * @return 有位发生了变化的数据的个数
+     */
+    public int putAll(Collection<? extends T> objects) {
+        int changed = 0;
+        for (T object : objects) {
+            if (put(object)) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 判断数据是否可能存在
+     *
+     * @return true：可能存在（有误判）；false：一定不存在
+     */
+    public boolean mightContain(T object) {
+        long[] hash = MurmurHash3.hash128(funnel.apply(object), seed);
+        long combined = hash[0];
+        for (int i = 0; i < hashNum; i++) {
+            long index = (combined & Long.MAX_VALUE) % bitSize;
+            if ((bits[(int) (index >>> 6)] & (1L << index)) == 0) {
+                return false;
+            }
+            combined += hash[1];
+        }
+        return true;
+    }
+
+    /**
+     * 按照当前位数组中1的比例计算的误判率：(bitCount / m) ^ k
+     */
+    public double expectedFpp() {
+        return Math.pow((double) bitCount / bitSize, hashNum);
+    }
+
+    public long getBitSize() {
+        return bitSize;
+    }
+
+    public int getHashNum() {
+        return hashNum;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * 插入的数据的个数，重复或者被误判为已存在的数据不计数
+     */
+    public long getInsertNum() {
+        return insertNum;
+    }
+
+    /**
+     * 写入文件，格式见{@link MappedBloomFilter}；目标文件已经存在则原子替换
+     */
+    public void writeTo(Path path) {
+        try {
+            MappedBloomFilter.write(this, path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入文件失败：" + path, e);
+        }
+    }
+
+    long[] getBits() {
+        return bits;
+    }
+
+    long getBitCount() {
+        return bitCount;
+    }
+
+    static long bitSize(long expectedInsertions, double fpp) {
+        checkArgument(expectedInsertions, fpp);
+        return Math.max(64, BloomFilterUtil.getBitsSize(expectedInsertions, fpp));
+    }
+
+    static int hashNum(long expectedInsertions, double fpp) {
+        checkArgument(expectedInsertions, fpp);
+        long hashNum = BloomFilterUtil.getHashNum(BloomFilterUtil.getBitsSize(expectedInsertions, fpp), expectedInsertions);
+        return (int) Math.max(1, Math.min(hashNum, 255));
+    }
+
+    private static void checkArgument(long expectedInsertions, double fpp) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("expectedInsertions 需要大于0");
+        }
+        if (fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("fpp 需要在(0, 1)之间");
+        }
+    }
+}
@@ -3,7 +3,7 @@ package com.simon.ocean;
 import lombok.experimental.UtilityClass;
 
 /**
- * 布隆过滤器的工具类，主要用于计算数组的大小，和哈希函数的个数
+ * 布隆过滤器的工具类，主要用于计算数组的大小，和哈希函数的个数，具体的过滤器实现见{@link BloomFilter}
  * @author zhouzhenyong
  * @since 2018/11/3 上午10:46
  */
@@ -29,8 +29,8 @@ public class BloomFilterUtil {
      * @return long 获取哈希函数的最优个数
      */
     public long getHashNum(long m, long n) {
-        double r = (m / n) * Math.log(2);
-        return Double.valueOf(r).longValue();
+        double r = ((double) m / n) * Math.log(2);
+        return Math.max(1, Math.round(r));
     }
 
 
@@ -49,4 +49,29 @@ public class BloomFilterUtil {
     public long getBitsSizeOnGByte(long n, double p) {
         return getBitsSizeOnMByte(n, p) / 1024;
     }
+
+    /**
+     * 异或过滤器（xor8）的位数：每个数据 1.23 * 8 位，另加32个槽位，误判率固定约为 1/256
+     *
+     * @param n 实际数据大小
+     * @return long 位数组的大小，见{@link XorFilter}
+     */
+    public long getXorFilterBitsSize(long n) {
+        long capacity = (long) Math.ceil(32 + 1.23 * n);
+        // 三个块等长
+        capacity = (capacity + 2) / 3 * 3;
+        return capacity * 8;
+    }
+
+    /**
+     * 布谷鸟过滤器的位数：每个桶4个16位的槽位，负载按照95%计算，桶的个数取2的幂，误判率约为 8 / 2^16
+     *
+     * @param n 同时存在的数据大小
+     * @return long 位数组的大小，见{@link CuckooFilter}
+     */
+    public long getCuckooFilterBitsSize(long n) {
+        long bucketNum = Math.max(1, (long) Math.ceil(n / (4 * 0.95)));
+        bucketNum = Long.highestOneBit(bucketNum - 1) << 1;
+        return Math.max(1, bucketNum) * 64;
+    }
 }
@@ -0,0 +1,50 @@
+package com.simon.ocean;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 粗粒度的时钟：后台线程每毫秒更新一次当前时间，热点路径上读取一个volatile变量代替System.currentTimeMillis()
+ * <p>
+ * 注意：精度为毫秒级（线程调度繁忙的时候可能落后几毫秒），只适用于过期时间这类对精度要求不高的场景
+ *
+ * @author shizi
+ * @since 2026-10-18 20:24:13
+ */
+public final class CoarseClock {
+
+    /**
+     * 读取的时间可能落后的毫秒数，离截止时间在这个范围内的时候用精确的时间判断
+     */
+    private static final long TOLERANCE_MILLIS = 2;
+    private static volatile long now = System.currentTimeMillis();
+    private static final ScheduledThreadPoolExecutor TICKER = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread thread = new Thread(r, "Thread-CoarseClock-ticker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        TICKER.scheduleAtFixedRate(() -> now = System.currentTimeMillis(), 1, 1, TimeUnit.MILLISECONDS);
+    }
+
+    private CoarseClock() {}
+
+    /**
+     * 当前时间的毫秒数
+     */
+    public static long currentTimeMillis() {
+        return now;
+    }
+
+    /**
+     * 当前时间是否还在截止时间之前（到达截止时间即为过期）：离截止时间较远的时候只比较粗粒度的时间，
+     * 很近的时候再读取一次精确的时间，避免时钟落后导致已经过期的数据多存活1毫秒
+     *
+     * @param now 之前读取的粗粒度的时间
+     * @param deadline 截止时间
+     */
+    public static boolean isBefore(long now, long deadline) {
+        return deadline > now && (deadline - now > TOLERANCE_MILLIS || deadline > System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,132 @@
+package com.simon.ocean;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 线程安全的BitMap，多线程并发写入的时候不会丢失数据
+ * <p>
+ * {@link BitMap}中的修改是普通的读-改-写，多个线程同时修改同一个字的时候会互相覆盖。这里用{@link AtomicLongArray}存储，
+ * 修改的时候通过CAS循环更新对应的long，不同的字之间互不影响，没有全局锁；读取只是一次volatile读，不会被写入阻塞。
+ * 数据个数用{@link LongAdder}分段计数，避免所有写线程竞争同一个计数器
+ * <p>
+ * 功能：
+ *  1.添加数据
+ *  2.清理数据
+ *  3.判断存在否
+ *  4.插入的数据的个数
+ *
+ * @author shizi
+ * @since 2026-10-18 11:20:44
+ */
+public class ConcurrentBitMap {
+
+    private final static int SHIFT = 6;
+    /**
+     * long占用bit大小，64
+     */
+    private final static int BITWORD = 1 << SHIFT;
+    /**
+     * 掩码
+     */
+    private final static int MASK = BITWORD - 1;
+    /**
+     * long分配的个数
+     */
+    private final int dataSize;
+    /**
+     * 数据标记数组
+     */
+    private final AtomicLongArray flags;
+    /**
+     * 数据的个数
+     */
+    private final LongAdder cardinality = new LongAdder();
+
+    /**
+     * @param maxValue 可以存储的最大的数据
+     */
+    public ConcurrentBitMap(int maxValue) {
+        if (maxValue < 0) {
+            throw new IllegalArgumentException("maxValue 不可为负数");
+        }
+        this.dataSize = (maxValue >> SHIFT) + 1;
+        this.flags = new AtomicLongArray(dataSize);
+    }
+
+    /**
+     * 保存数据
+     *
+     * @return true：数据是本次新插入的，false：数据之前已经存在
+     */
+    public boolean insert(int data) {
+        int index = checkIndex(data);
+        long mask = 1L << (data & MASK);
+        long before;
+        do {
+            before = flags.get(index);
+            if ((before & mask) != 0) {
+                return false;
+            }
+        } while (!flags.compareAndSet(index, before, before | mask));
+        cardinality.increment();
+        return true;
+    }
+
+    /**
+     * 判断是否包含对应的数据
+     * @return 包含返回true，否则false
+     */
+    public boolean contain(int data) {
+        int index = data >> SHIFT;
+        if (data < 0 || index >= dataSize) {
+            return false;
+        }
+        return (flags.get(index) & (1L << (data & MASK))) != 0;
+    }
+
+    /**
+     * 清理数据
+     *
+     * @return true：数据是本次删除的，false：数据本来就不存在
+     */
+    public boolean delete(int data) {
+        int index = checkIndex(data);
+        long mask = 1L << (data & MASK);
+        long before;
+        do {
+            before = flags.get(index);
+            if ((before & mask) == 0) {
+                return false;
+            }
+        } while (!flags.compareAndSet(index, before, before & ~mask));
+        cardinality.decrement();
+        return true;
+    }
+
+    /**
+     * 返回bitmap中元素的个数，并发修改的时候为近似值
+     *
+     * @return bitmap中元素的个数
+     */
+    public long count() {
+        return cardinality.sum();
+    }
+
+    /**
+     * 当前占用的内存大小（估算值）
+     *
+     * @return 字节数
+     */
+    public long memoryUsage() {
+        return 16 + dataSize * 8L;
+    }
+
+    private int checkIndex(int data) {
+        int index = data >> SHIFT;
+        if (data < 0 || index >= dataSize) {
+            throw new BitMap.SizeOutOfBoundsException();
+        }
+        return index;
+    }
+}
@@ -0,0 +1,143 @@
+package com.simon.ocean;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 线程安全的布隆过滤器，适用于多线程同时判重和写入的场景
+ * <p>
+ * 大小和哈希的计算方式与{@link BloomFilter}相同；位数组用{@link AtomicLongArray}存储，每一位的设置都是对所在long的CAS，
+ * 没有全局锁，位已经是1的时候不做写入，避免无谓的缓存行失效
+ * <p>
+ * 功能：
+ *  1.添加数据，并返回数据之前是否存在：{@link #putIfAbsent(Object)}
+ *  2.判断可能存在否
+ *  3.当前的误判率
+ *
+ * @author shizi
+ * @since 2026-10-18 14:58:42
+ */
+public class ConcurrentBloomFilter<T> {
+
+    /**
+     * 位数组
+     */
+    private final AtomicLongArray bits;
+    /**
+     * 位数组的大小：m
+     */
+    private final long bitSize;
+    /**
+     * 哈希函数的个数：k
+     */
+    private final int hashNum;
+    /**
+     * 对象转换为字节的函数
+     */
+    private final Function<? super T, byte[]> funnel;
+    /**
+     * 位数组中1的个数
+     */
+    private final LongAdder bitCount = new LongAdder();
+
+    /**
+     * @param expectedInsertions 预计插入的数据个数：n
+     * @param fpp 期望的误判率：p
+     * @param funnel 对象转换为字节的函数
+     */
+    public ConcurrentBloomFilter(long expectedInsertions, double fpp, Function<? super T, byte[]> funnel) {
+        long bitSize = BloomFilter.bitSize(expectedInsertions, fpp);
+        this.bits = new AtomicLongArray(Math.toIntExact((bitSize + 63) >>> 6));
+        this.bitSize = (long) bits.length() << 6;
+        this.hashNum = BloomFilter.hashNum(expectedInsertions, fpp);
+        this.funnel = funnel;
+    }
+
+    /**
+     * 字符串的布隆过滤器，按照UTF-8转换为字节
+     */
+    public static ConcurrentBloomFilter<CharSequence> create(long expectedInsertions, double fpp) {
+        return new ConcurrentBloomFilter<>(expectedInsertions, fpp, s -> s.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 添加数据，一次调用就可以知道数据之前是否出现过
+     * 注意：多个线程同时添加同一个数据的时候，各自设置了不同的位，可能都返回true
+     *
+     * @return true：有位由0变为1，数据之前一定不存在，本次已经添加；false：所有的位之前都是1，数据可能已经存在
+     */
+    public boolean putIfAbsent(T object) {
+        long[] hash = MurmurHash3.hash128(funnel.apply(object), BloomFilter.DEFAULT_SEED);
+        long combined = hash[0];
+        boolean changed = false;
+        for (int i = 0; i < hashNum; i++) {
+            long index = (combined & Long.MAX_VALUE) % bitSize;
+            if (setBit((int) (index >>> 6), 1L << index)) {
+                changed = true;
+            }
+            combined += hash[1];
+        }
+        return changed;
+    }
+
+    /**
+     * 添加数据
+     *
+     * @return 同{@link #putIfAbsent(Object)}
+     */
+    public boolean put(T object) {
+        return putIfAbsent(object);
+    }
+
+    /**
+     * 判断数据是否可能存在
+     *
+     * @return true：可能存在（有误判）；false：一定不存在
+     */
+    public boolean mightContain(T object) {
+        long[] hash = MurmurHash3.hash128(funnel.apply(object), BloomFilter.DEFAULT_SEED);
+        long combined = hash[0];
+        for (int i = 0; i < hashNum; i++) {
+            long index = (combined & Long.MAX_VALUE) % bitSize;
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+            combined += hash[1];
+        }
+        return true;
+    }
+
+    /**
+     * 按照当前位数组中1的比例计算的误判率：(bitCount / m) ^ k
+     */
+    public double expectedFpp() {
+        return Math.pow((double) bitCount.sum() / bitSize, hashNum);
+    }
+
+    public long getBitSize() {
+        return bitSize;
+    }
+
+    public int getHashNum() {
+        return hashNum;
+    }
+
+    /**
+     * CAS设置对应的位
+     *
+     * @return true：本次由0变为1；false：之前已经是1
+     */
+    private boolean setBit(int wordIndex, long mask) {
+        long before;
+        do {
+            before = bits.get(wordIndex);
+            if ((before & mask) != 0) {
+                return false;
+            }
+        } while (!bits.compareAndSet(wordIndex, before, before | mask));
+        bitCount.increment();
+        return true;
+    }
+}
@@ -1,9 +1,11 @@
 package com.simon.ocean;
 
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.function.BiConsumer;
@@ -31,6 +33,10 @@ public class ConsistentHashUtil {
      * 用可序化的线程安全map存储数据
      */
     private ConcurrentSkipListMap<String, ServerNode> serverNodeMap = new ConcurrentSkipListMap<>();
+    /**
+     * 路由表：服务范围的拷贝，拓扑变化（注册、删除、清理、重新初始化）的时候整体重建，查找时二分
+     */
+    private volatile RoutingTable routingTable = RoutingTable.EMPTY;
     /**
      * 表示哈希的管理范围多大
      */
@@ -101,6 +107,7 @@ public class ConsistentHashUtil {
                 if (null != splitHook) {
                     // 先将数据放进去，下面回调中会用到
                     serverNodeMap.put(serverName, node);
+                    refreshRoutingTable();
 
                     // 新旧服务节点删除分离出去的范围
                     splitHook.accept(new Pair<>(serverName, toSplitServerName), node.getControlRange());
@@ -112,10 +119,12 @@ public class ConsistentHashUtil {
 
                 // 先将数据放进去，下面回调中会用到
                 serverNodeMap.put(serverName, node);
+                refreshRoutingTable();
 
                 // 针对初始化的节点，进行初始化回调
                 splitHook.accept(new Pair<>(serverName, null), ControlRange.of(0, HASH_MAX_SIZE - 1));
             }
+            refreshRoutingTable();
         }
     }
 
@@ -135,6 +144,7 @@ public class ConsistentHashUtil {
             if (null != newServerNode) {
                 mergeNeighborServer(toDelNode);
                 serverNodeMap.remove(serverName);
+                refreshRoutingTable();
 
                 if (null != mergeHook) {
                     // 调用回调
@@ -142,6 +152,7 @@ public class ConsistentHashUtil {
                 }
             } else {
                 serverNodeMap.remove(serverName);
+                refreshRoutingTable();
             }
         }
     }
@@ -151,16 +162,7 @@ public class ConsistentHashUtil {
      * @param id 某个实际数据的id
      */
     public String getServerName(Long id){
-        Integer index = getIndex(id);
-
-        Set<Entry<String, ServerNode>> entrySet = serverNodeMap.entrySet();
-        for (Entry<String, ServerNode> entry : entrySet){
-            ControlRange controlRange = entry.getValue().getControlRange();
-            if (controlRange.contain(index)) {
-                return entry.getKey();
-            }
-        }
-        return null;
+        return routingTable.getServerName(getIndex(id));
     }
 
     /**
@@ -214,6 +216,7 @@ public class ConsistentHashUtil {
 
     public void clear(){
         serverNodeMap.clear();
+        refreshRoutingTable();
     }
 
     /**
@@ -226,6 +229,14 @@ public class ConsistentHashUtil {
         if(null != serverRange && !serverRange.isEmpty()){
             serverNodeMap.putAll(serverRange);
         }
+        refreshRoutingTable();
+    }
+
+    /**
+     * 按照当前的服务范围重建路由表
+     */
+    private void refreshRoutingTable() {
+        routingTable = RoutingTable.of(serverNodeMap.values());
     }
 
     /**
@@ -302,8 +313,8 @@ public class ConsistentHashUtil {
     /**
      * 数据取余转换
      */
-    private Integer getIndex(Long id){
-        return Math.toIntExact((id & (1 << SIZE_POWER) - 1));
+    private int getIndex(long id){
+        return (int) (id & (1 << SIZE_POWER) - 1);
     }
 
     /**
@@ -402,6 +413,68 @@ public class ConsistentHashUtil {
         }
     }
 
+    /**
+     * 不可变的路由表：服务范围按照from排序，from、to和服务名字分别存放在数组中，查找时对from二分，没有装箱和对象的分配
+     * <p>
+     * 注意：服务的范围互不重叠；直接修改{@link ControlRange}不会刷新路由表
+     */
+    private static final class RoutingTable {
+
+        private static final RoutingTable EMPTY = new RoutingTable(new int[0], new int[0], new String[0]);
+        private final int[] froms;
+        private final int[] tos;
+        private final String[] serverNames;
+
+        private RoutingTable(int[] froms, int[] tos, String[] serverNames) {
+            this.froms = froms;
+            this.tos = tos;
+            this.serverNames = serverNames;
+        }
+
+        private static RoutingTable of(Collection<ServerNode> serverNodes) {
+            List<ServerNode> nodeList = new ArrayList<>(serverNodes.size());
+            for (ServerNode serverNode : serverNodes) {
+                ControlRange controlRange = serverNode.getControlRange();
+                if (null != controlRange && null != controlRange.getFrom() && null != controlRange.getTo()) {
+                    nodeList.add(serverNode);
+                }
+            }
+            nodeList.sort(Comparator.comparing(serverNode -> serverNode.getControlRange().getFrom()));
+
+            int size = nodeList.size();
+            int[] froms = new int[size];
+            int[] tos = new int[size];
+            String[] serverNames = new String[size];
+            for (int i = 0; i < size; i++) {
+                ServerNode serverNode = nodeList.get(i);
+                froms[i] = serverNode.getControlRange().getFrom();
+                tos[i] = serverNode.getControlRange().getTo();
+                serverNames[i] = serverNode.getServerName();
+            }
+            return new RoutingTable(froms, tos, serverNames);
+        }
+
+        /**
+         * 查找最后一个from不大于index的范围，index在范围内则返回对应的服务名字
+         */
+        private String getServerName(int index) {
+            int low = 0;
+            int high = froms.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (froms[mid] <= index) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            if (high >= 0 && index <= tos[high]) {
+                return serverNames[high];
+            }
+            return null;
+        }
+    }
+
     /**
      * 相邻服务，用于服务禁用时候的数据迁移
      */
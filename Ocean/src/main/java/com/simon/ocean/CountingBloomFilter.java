@@ -0,0 +1,149 @@
+package com.simon.ocean;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+
+/**
+ * 计数布隆过滤器，支持删除数据
+ * <p>
+ * 与{@link BloomFilter}相比，每一位换成了一个4位的计数器，每个long中存放16个计数器；添加时计数器加1，删除时减1，
+ * 计数器为0表示该位置没有数据。计数器达到15之后不再变化（也不会被减），避免溢出导致的误删。内存是普通布隆过滤器的4倍
+ * <p>
+ * 功能：
+ *  1.添加数据
+ *  2.删除数据
+ *  3.判断可能存在否
+ * 注意：只能删除确定添加过的数据，否则会影响其他数据的判断；该类非线程安全
+ *
+ * @author shizi
+ * @since 2026-10-18 15:48:27
+ */
+public class CountingBloomFilter<T> {
+
+    /**
+     * 每个计数器的位数
+     */
+    private static final int COUNTER_BITS = 4;
+    /**
+     * 计数器的最大值
+     */
+    private static final long COUNTER_MAX = (1 << COUNTER_BITS) - 1;
+    /**
+     * 计数器数组，每个long中16个计数器
+     */
+    private final long[] counters;
+    /**
+     * 计数器的个数：m
+     */
+    private final long counterSize;
+    /**
+     * 哈希函数的个数：k
+     */
+    private final int hashNum;
+    /**
+     * 对象转换为字节的函数
+     */
+    private final Function<? super T, byte[]> funnel;
+    /**
+     * 当前的数据的个数
+     */
+    private long count;
+
+    /**
+     * @param expectedInsertions 预计同时存在的数据个数：n
+     * @param fpp 期望的误判率：p
+     * @param funnel 对象转换为字节的函数
+     */
+    public CountingBloomFilter(long expectedInsertions, double fpp, Function<? super T, byte[]> funnel) {
+        long size = BloomFilter.bitSize(expectedInsertions, fpp);
+        this.counters = new long[Math.toIntExact((size + 15) >>> 4)];
+        this.counterSize = (long) counters.length << 4;
+        this.hashNum = BloomFilter.hashNum(expectedInsertions, fpp);
+        this.funnel = funnel;
+    }
+
+    /**
+     * 字符串的布隆过滤器，按照UTF-8转换为字节
+     */
+    public static CountingBloomFilter<CharSequence> create(long expectedInsertions, double fpp) {
+        return new CountingBloomFilter<>(expectedInsertions, fpp, s -> s.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 添加数据，同一个数据添加多次，需要删除同样的次数
+     */
+    public void put(T object) {
+        long[] hash = MurmurHash3.hash128(funnel.apply(object), BloomFilter.DEFAULT_SEED);
+        long combined = hash[0];
+        for (int i = 0; i < hashNum; i++) {
+            long index = (combined & Long.MAX_VALUE) % counterSize;
+            int wordIndex = (int) (index >>> 4);
+            int shift = (int) (index & 15) << 2;
+            long counter = (counters[wordIndex] >>> shift) & COUNTER_MAX;
+            if (counter < COUNTER_MAX) {
+                counters[wordIndex] += 1L << shift;
+            }
+            combined += hash[1];
+        }
+        count++;
+    }
+
+    /**
+     * 删除数据
+     *
+     * @return true：删除成功；false：数据一定不存在，没有做任何修改
+     */
+    public boolean remove(T object) {
+        if (!mightContain(object)) {
+            return false;
+        }
+        long[] hash = MurmurHash3.hash128(funnel.apply(object), BloomFilter.DEFAULT_SEED);
+        long combined = hash[0];
+        for (int i = 0; i < hashNum; i++) {
+            long index = (combined & Long.MAX_VALUE) % counterSize;
+            int wordIndex = (int) (index >>> 4);
+            int shift = (int) (index & 15) << 2;
+            long counter = (counters[wordIndex] >>> shift) & COUNTER_MAX;
+            // 已经饱和的计数器不知道真实的次数，不再减少
+            if (counter < COUNTER_MAX) {
+                counters[wordIndex] -= 1L << shift;
+            }
+            combined += hash[1];
+        }
+        count--;
+        return true;
+    }
+
+    /**
+     * 判断数据是否可能存在
+     *
+     * @return true：可能存在（有误判）；false：一定不存在
+     */
+    public boolean mightContain(T object) {
+        long[] hash = MurmurHash3.hash128(funnel.apply(object), BloomFilter.DEFAULT_SEED);
+        long combined = hash[0];
+        for (int i = 0; i < hashNum; i++) {
+            long index = (combined & Long.MAX_VALUE) % counterSize;
+            if (((counters[(int) (index >>> 4)] >>> ((index & 15) << 2)) & COUNTER_MAX) == 0) {
+                return false;
+            }
+            combined += hash[1];
+        }
+        return true;
+    }
+
+    /**
+     * 当前的数据的个数
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public long getCounterSize() {
+        return counterSize;
+    }
+
+    public int getHashNum() {
+        return hashNum;
+    }
+}
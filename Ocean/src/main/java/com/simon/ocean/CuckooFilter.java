@@ -0,0 +1,223 @@
+package com.simon.ocean;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * 布谷鸟过滤器，可以删除数据，同样误判率下比计数布隆过滤器省内存
+ * <p>
+ * 每个桶4个槽位，每个槽位存放16位的指纹，一个桶正好是一个long。每个数据有两个候选桶：i1由哈希得到，i2 = i1 ^ hash(指纹)，
+ * 两个桶都满了的时候随机踢出一个指纹到它的另一个候选桶，最多踢500次。负载可以到95%，误判率约为 2 * 4 / 2^16（0.012%）。
+ * 大小的计算见{@link BloomFilterUtil#getCuckooFilterBitsSize(long)}
+ * <p>
+ * 功能：
+ *  1.添加数据
+ *  2.删除数据
+ *  3.判断可能存在否
+ * 注意：同一个数据添加多次会占用多个槽位，需要删除同样的次数；只能删除确定添加过的数据；该类非线程安全
+ *
+ * @author shizi
+ * @since 2026-10-18 17:18:36
+ */
+public class CuckooFilter<T> {
+
+    /**
+     * 每个桶的槽位数
+     */
+    private static final int BUCKET_SIZE = 4;
+    /**
+     * 指纹的位数
+     */
+    private static final int FINGERPRINT_BITS = 16;
+    private static final long FINGERPRINT_MASK = (1L << FINGERPRINT_BITS) - 1;
+    /**
+     * 最大的踢出次数
+     */
+    private static final int MAX_KICKS = 500;
+    /**
+     * 桶数组，每个long是一个桶，低位到高位依次为4个槽位，0表示空
+     */
+    private final long[] buckets;
+    private final int bucketMask;
+    private final Function<? super T, byte[]> funnel;
+    /**
+     * 踢出失败之后暂存的指纹，存在时过滤器已满，不可再添加
+     */
+    private int victimIndex;
+    private int victimFingerprint;
+    private long count;
+
+    /**
+     * @param expectedInsertions 预计同时存在的数据个数
+     * @param funnel 对象转换为字节的函数
+     */
+    public CuckooFilter(long expectedInsertions, Function<? super T, byte[]> funnel) {
+        this.buckets = new long[Math.toIntExact(BloomFilterUtil.getCuckooFilterBitsSize(expectedInsertions) / 64)];
+        this.bucketMask = buckets.length - 1;
+        this.funnel = funnel;
+    }
+
+    /**
+     * 字符串的布谷鸟过滤器，按照UTF-8转换为字节
+     */
+    public static CuckooFilter<CharSequence> create(long expectedInsertions) {
+        return new CuckooFilter<>(expectedInsertions, s -> s.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 添加数据
+     *
+     * @return true：添加成功；false：过滤器已满
+     */
+    public boolean put(T object) {
+        if (victimFingerprint != 0) {
+            return false;
+        }
+        long hash = hash(object);
+        int fingerprint = fingerprint(hash);
+        int i1 = (int) hash & bucketMask;
+        int i2 = altIndex(i1, fingerprint);
+        if (insertToBucket(i1, fingerprint) || insertToBucket(i2, fingerprint)) {
+            count++;
+            return true;
+        }
+
+        // 两个桶都满了，随机踢出一个指纹，放到它的另一个候选桶
+        int index = ThreadLocalRandom.current().nextBoolean() ? i1 : i2;
+        for (int kick = 0; kick < MAX_KICKS; kick++) {
+            int slot = ThreadLocalRandom.current().nextInt(BUCKET_SIZE);
+            int old = getSlot(index, slot);
+            setSlot(index, slot, fingerprint);
+            fingerprint = old;
+            index = altIndex(index, fingerprint);
+            if (insertToBucket(index, fingerprint)) {
+                count++;
+                return true;
+            }
+        }
+        // 最后被踢出的指纹暂存下来，保证已经添加的数据不会丢失
+        victimIndex = index;
+        victimFingerprint = fingerprint;
+        count++;
+        return true;
+    }
+
+    /**
+     * 判断数据是否可能存在
+     *
+     * @return true：可能存在（有误判）；false：一定不存在
+     */
+    public boolean mightContain(T object) {
+        long hash = hash(object);
+        int fingerprint = fingerprint(hash);
+        int i1 = (int) hash & bucketMask;
+        int i2 = altIndex(i1, fingerprint);
+        if (bucketContains(i1, fingerprint) || bucketContains(i2, fingerprint)) {
+            return true;
+        }
+        return victimFingerprint == fingerprint && (victimIndex == i1 || victimIndex == i2);
+    }
+
+    /**
+     * 删除数据
+     *
+     * @return true：删除成功；false：数据不存在
+     */
+    public boolean remove(T object) {
+        long hash = hash(object);
+        int fingerprint = fingerprint(hash);
+        int i1 = (int) hash & bucketMask;
+        int i2 = altIndex(i1, fingerprint);
+        if (victimFingerprint == fingerprint && (victimIndex == i1 || victimIndex == i2)) {
+            victimFingerprint = 0;
+            count--;
+            return true;
+        }
+        if (removeFromBucket(i1, fingerprint) || removeFromBucket(i2, fingerprint)) {
+            count--;
+            // 腾出了位置，尝试把暂存的指纹放回去
+            if (victimFingerprint != 0 && insertToBucket(victimIndex, victimFingerprint)) {
+                victimFingerprint = 0;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 当前的数据的个数
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public long getBitSize() {
+        return buckets.length * 64L;
+    }
+
+    /**
+     * 负载：已经使用的槽位的比例
+     */
+    public double loadFactor() {
+        return (double) count / (buckets.length * BUCKET_SIZE);
+    }
+
+    private long hash(T object) {
+        return MurmurHash3.hash128(funnel.apply(object), BloomFilter.DEFAULT_SEED)[0];
+    }
+
+    /**
+     * 用哈希的高16位作为指纹，0表示空槽位，因此0映射为1
+     */
+    private static int fingerprint(long hash) {
+        int fingerprint = (int) (hash >>> (64 - FINGERPRINT_BITS));
+        return fingerprint == 0 ? 1 : fingerprint;
+    }
+
+    /**
+     * 另一个候选桶：index ^ hash(指纹)，两个桶互为对方的候选桶
+     */
+    private int altIndex(int index, int fingerprint) {
+        return (index ^ (int) MurmurHash3.fmix64(fingerprint)) & bucketMask;
+    }
+
+    private int getSlot(int index, int slot) {
+        return (int) ((buckets[index] >>> (slot * FINGERPRINT_BITS)) & FINGERPRINT_MASK);
+    }
+
+    private void setSlot(int index, int slot, int fingerprint) {
+        int shift = slot * FINGERPRINT_BITS;
+        buckets[index] = (buckets[index] & ~(FINGERPRINT_MASK << shift)) | ((long) fingerprint << shift);
+    }
+
+    private boolean insertToBucket(int index, int fingerprint) {
+        for (int slot = 0; slot < BUCKET_SIZE; slot++) {
+            if (getSlot(index, slot) == 0) {
+                setSlot(index, slot, fingerprint);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean bucketContains(int index, int fingerprint) {
+        long bucket = buckets[index];
+        for (int slot = 0; slot < BUCKET_SIZE; slot++) {
+            if (((bucket >>> (slot * FINGERPRINT_BITS)) & FINGERPRINT_MASK) == fingerprint) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean removeFromBucket(int index, int fingerprint) {
+        for (int slot = 0; slot < BUCKET_SIZE; slot++) {
+            if (getSlot(index, slot) == fingerprint) {
+                setSlot(index, slot, 0);
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,82 @@
+package com.simon.ocean;
+
+/**
+ * 访问频率的估算（Count-Min Sketch），用于TinyLFU的准入判断
+ * <p>
+ * 每个long中存放16个4位的计数器，每个数据通过4个哈希落在4个long中各一个计数器，取最小值作为频率的估算，最大为15。
+ * 计数的次数达到容量的10倍之后，所有计数器减半，旧的热点数据的频率会逐渐衰减
+ * <p>
+ * 注意：该类非线程安全
+ *
+ * @author shizi
+ * @since 2026-10-18 19:41:26
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param capacity 需要统计的数据个数
+     */
+    FrequencySketch(int capacity) {
+        int size = Math.max(16, Integer.highestOneBit(Math.max(1, capacity) - 1) << 1);
+        this.table = new long[size];
+        this.tableMask = size - 1;
+        this.sampleSize = 10 * Math.max(16, capacity);
+    }
+
+    /**
+     * 估算的频率：0~15
+     */
+    int frequency(long hash) {
+        int start = (int) (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xFL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * 频率加1，已经达到15的计数器不变
+     */
+    void increment(long hash) {
+        int start = (int) (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int shift = (start + i) << 2;
+            if (((table[index] >>> shift) & 0xFL) != 0xFL) {
+                table[index] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * 所有计数器减半
+     */
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions >>>= 1;
+    }
+
+    private int indexOf(long hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return (int) h & tableMask;
+    }
+}
@@ -1,31 +1,37 @@
 package com.simon.ocean;
 
-import com.alibaba.fastjson.JSON;
-import java.io.UnsupportedEncodingException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeMap;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.ThreadPoolExecutor.DiscardPolicy;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
-import java.util.stream.Stream;
 
 /**
  * 高性能单机幂等性判断工具
  * 功能
  * 1.数据判断是否存在或者失效：如果不存在或失效，则自动添加到内部缓存中
  * 2.数据过期失效被清理：在过期后会自动清理对应的缓存数据，不会造成数据浪费
+ * 3.命名实例：不同的业务通过{@link #builder}创建各自的实例，过期时间、最大个数、淘汰策略和内存互相独立，共用一个守护线程和一个写入线程
  *
- * 高性能：单机化弱依赖DB，数据经过非逆向压缩进行内存存储，最大可存储100万条数据（内存大概占用222.2M），最大条数也可设置
+ * 高性能：单机化弱依赖DB，数据经过128位哈希压缩为两个long进行内存存储，最大可存储100万条数据（每条数据在存储和时间轮中共占用约72字节，内存大概占用70M），最大条数也可设置
  * 可扩展：在数据超过100万条的时候，更多的数据放第三方（DB或者Redis）存储结构中
  *
  * @author zhouzhenyong
@@ -33,39 +39,101 @@ import java.util.stream.Stream;
  */
 public class Idempotency {
 
-    private static Idempotency instance = new Idempotency();
     private static final String LOG_PRE = "[Idempotency]";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
     /**
-     * 幂等性的数据缓存表，这里采用线程安全的有序的Map，通过expireTime和dataStr合并进行排序，从而得到按照时间排序的，删除和插入都比较方便
+     * 每个线程复用的哈希计算器
      */
-    private ConcurrentSkipListMap<String, Long> dataMap = new ConcurrentSkipListMap<>();
+    private static final ThreadLocal<MurmurHash3.Hasher> HASHER = ThreadLocal.withInitial(MurmurHash3.Hasher::new);
+    private static final int DEFAULT_MAX_DATA_SIZE = 100 * 10000;
+    private static final String DEFAULT_NAME = "default";
+    /**
+     * 所有实例共用的守护线程：过期数据清理、第三方数据清理，只做内存中的操作，不被IO阻塞
+     */
+    private static final ScheduledThreadPoolExecutor SCHEDULER = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread thread = new Thread(r, "Thread-Idempotency-deamon");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * 所有实例共用的写入线程：第三方批量写入、快照写入，写入慢的时候不影响过期数据的清理
+     */
+    private static final ScheduledThreadPoolExecutor WRITER = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread thread = new Thread(r, "Thread-Idempotency-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * 所有实例共用的第三方回调执行器
+     */
+    private static final Executor HOOK_EXECUTOR = new ThreadPoolExecutor(4, 8, 1, TimeUnit.MINUTES,
+        new ArrayBlockingQueue<>(20), r-> new Thread(r, "Thread-Idempotency-hook"), new DiscardPolicy());
+    /**
+     * 按照名字注册的实例
+     */
+    private static final Map<String, Idempotency> INSTANCES = new ConcurrentHashMap<>();
+    private static Idempotency instance = new Idempotency(DEFAULT_NAME);
+
+    static {
+        INSTANCES.put(DEFAULT_NAME, instance);
+    }
+    /**
+     * 实例的名字，不同的业务使用不同的实例，数据的过期时间、最大个数、淘汰策略各自独立
+     */
+    private final String name;
+    /**
+     * 幂等性的数据缓存表，这里采用分段的开放寻址哈希表，key到过期时间的映射，查找和插入都是O(1)，见{@link ShardedIdempotencyStore}
+     */
+    private ShardedIdempotencyStore dataMap = new ShardedIdempotencyStore(DEFAULT_MAX_DATA_SIZE);
+    /**
+     * 过期清理的时间轮：每100毫秒一格，512格（约51秒）一圈，每格只清理到期的数据，见{@link IdempotencyTimingWheel}
+     */
+    private IdempotencyTimingWheel timingWheel = new IdempotencyTimingWheel(dataMap, 100, 512, System.currentTimeMillis());
     /**
      * 过期时间单位设置：默认设置为20秒，向后延长20的mills
      */
     private long backExpireTimeMills = TimeUnit.SECONDS.toMillis(20);
     /**
-     * 我们这里设定最大内存的数据存储量，如果超过这个数值100万条数据（经过计算大概：222.2MB），则将新的数据插入到外部第三方（DB或者Redis）存储中，以保证内存的正常
+     * 我们这里设定最大内存的数据存储量，如果超过这个数值100万条数据（每条数据约72字节，大概：70MB），则将新的数据插入到外部第三方（DB或者Redis）存储中，以保证内存的正常
+     */
+    private Integer maxDataSize = DEFAULT_MAX_DATA_SIZE;
+    /**
+     * 数据的key的生成策略，默认按照类名和值计算128位的哈希
      */
-    private Integer maxDataSize = 100 * 10000;
+    private IdempotencyKeyStrategy keyStrategy = IdempotencyKeyStrategy.DEFAULT;
     /**
      * 外部数据标志，表示外部存储是否还有可用数据，用于清理和查找时候判断
      */
     private volatile Boolean outFlag = false;
     /**
-     * 过期数据清理守护线程
+     * 本实例在共用守护线程中的定时任务
      */
-    private ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, r -> {
-        Thread thread = new Thread(r, "Thread-Idempotency-deamon");
-        thread.setDaemon(true);
-        return thread;
-    });
+    private ScheduledFuture<?> expireFuture;
+    private ScheduledFuture<?> deleteOtherFuture;
 
     /**
-     * 第三方处理回调：数据插入（用于将对象和对象的过期时间保存）
-     * param1：为对象的唯一key
-     * param2：为对象的过期时间
+     * 第三方处理回调：数据批量插入（用于将对象和对象的过期时间保存）
+     * 每个Entry的key：为对象的唯一key，128位哈希的32个字符的十六进制
+     * 每个Entry的value：为对象的过期时间
+     */
+    private Consumer<List<Entry<String, Long>>> insertAllHook;
+    /**
+     * 第三方数据插入的批量异步写，注册了插入回调之后才创建
      */
-    private BiConsumer<String, Long> insertHook;
+    private volatile IdempotencyWriteBehind writeBehind;
+    /**
+     * 批量异步写的配置：每批最多500个，最多等待50毫秒，队列容量1万，队列满的时候最多等待10毫秒
+     */
+    private int writeBehindBatchSize = 500;
+    private long writeBehindMaxDelayMillis = 50;
+    private int writeBehindQueueCapacity = 10000;
+    private long writeBehindOfferTimeoutMillis = 10;
+    /**
+     * 本地快照，开启之后才创建，见{@link #enableSnapshot}
+     */
+    private volatile IdempotencySnapshot snapshot;
+    private ScheduledFuture<?> snapshotFuture;
+    private Thread snapshotShutdownHook;
     /**
      * 第三方处理回调：数据删除
      * 逻辑为：删除已经过期的对象（即：当前时间的毫秒数大于数据的过期时间）
@@ -77,36 +145,61 @@ public class Idempotency {
      * param2：对象的过期时间
      */
     private Function<String, Long> selectHook;
+    /**
+     * 第三方处理回调：数据批量获取
+     * param1：本地没有的数据的key
+     * return：第三方存在的数据的key到过期时间的映射，不存在的不用返回
+     */
+    private Function<List<String>, Map<String, Long>> selectAllHook;
     /**
      * 第三方处理回调：是否为空，第三方数据池中的数据是否为空，用于后面删除时候判断是否需要去第三方数据池删除，如果已经为空则不需要调用第三方了
      * return：是否为空
      */
     private Supplier<Boolean> isEmptyHook;
-    /**
-     * 第三方回调执行器
-     */
-    private Executor hookExecutor = new ThreadPoolExecutor(4, 8, 1, TimeUnit.MINUTES,
-        new ArrayBlockingQueue<>(20), r-> new Thread(r, "Thread-Idempotency-hook"), new DiscardPolicy());
 
-    private Idempotency() {
+    private Idempotency(String name) {
+        this.name = name;
         initDeamon();
     }
 
+    /**
+     * 默认的实例
+     */
     public static Idempotency getInstance() {
         return instance;
     }
 
+    /**
+     * 获取按照名字注册的实例，见{@link #builder}
+     *
+     * @return 没有对应名字的实例的时候返回null
+     */
+    public static Idempotency getInstance(String name) {
+        return INSTANCES.get(name);
+    }
+
+    /**
+     * 创建命名实例的构造器，实例之间的数据、过期时间、最大个数和淘汰策略互相独立，共用一个守护线程和一个写入线程
+     */
+    public static Builder builder(String name) {
+        return new Builder(name);
+    }
+
+    /**
+     * 所有实例的内存占用：实例的名字到槽位占用的字节数
+     */
+    public static Map<String, Long> memoryReport() {
+        Map<String, Long> report = new TreeMap<>();
+        INSTANCES.forEach((name, idempotency) -> report.put(name, idempotency.memoryUsage()));
+        return report;
+    }
+
     private void initDeamon(){
-        scheduler.scheduleWithFixedDelay(()->{
-            for (Entry<String, Long> entry : dataMap.entrySet()) {
-                if(System.currentTimeMillis() > entry.getValue()){
-                    dataMap.remove(entry.getKey());
-                }
-            }
+        long tickMillis = timingWheel.getTickMillis();
+        expireFuture = SCHEDULER.scheduleAtFixedRate(() -> timingWheel.advance(System.currentTimeMillis()), tickMillis, tickMillis, TimeUnit.MILLISECONDS);
 
-            // 处理第三方清理逻辑
-            deleteOther();
-        }, 0, 5, TimeUnit.SECONDS);
+        // 处理第三方清理逻辑
+        deleteOtherFuture = SCHEDULER.scheduleWithFixedDelay(this::deleteOther, 0, 5, TimeUnit.SECONDS);
     }
 
     /**
@@ -121,7 +214,7 @@ public class Idempotency {
                 } else {
                     if(null != isEmptyHook && !isEmptyHook.get()){
                         if (null != clearExpireHook){
-                            hookExecutor.execute(clearExpireHook);
+                            HOOK_EXECUTOR.execute(clearExpireHook);
                         }
                     }
                 }
@@ -137,13 +230,127 @@ public class Idempotency {
         if (null == object){
             return false;
         }
-        String key = buildKey(object);
-        if (innerContain(key)) {
+        MurmurHash3.Hasher hasher = HASHER.get().reset(0);
+        keyStrategy.hash(object, hasher);
+        hasher.finish();
+        long hi = hasher.getH1();
+        long lo = hasher.getH2();
+        // 一次查找完成判断和标记，数据存在的时候没有对象分配
+        long now = CoarseClock.currentTimeMillis();
+        long expireTime = now + backExpireTimeMills;
+        int state = dataMap.checkAndMark(hi, lo, now, expireTime);
+        if (ShardedIdempotencyStore.PRESENT == state) {
             return true;
         }
 
-        insert(key);
-        return false;
+        // 如果开启第三方，且支持查询回调，则获取三方数据的过期时间
+        Long expireTime3f = null;
+        if (outFlag && (null != selectHook || null != selectAllHook)) {
+            String key = toHex(hi, lo);
+            expireTime3f = null != selectHook ? selectHook.apply(key) : select(Collections.singletonList(key)).get(key);
+        }
+        return resolveMiss(hi, lo, state, now, expireTime, expireTime3f);
+    }
+
+    /**
+     * 批量判断是否含有对应的数据，不包含的数据插入到缓存中，和逐个调用{@link #contain}的结果一致（同一批中后出现的相同数据为重复）
+     * <p>
+     * 先批量计算哈希，本地没有的数据合并为一次第三方的批量查询，见{@link #registerSelectAllHook}
+     *
+     * @param objects 每个元素为一条数据的key，元素为Object[]的时候和contain的可变参数一样处理
+     * @return 重复的数据的下标
+     */
+    public BitSet containAll(List<?> objects) {
+        int size = objects.size();
+        BitSet duplicates = new BitSet(size);
+        // 批量计算哈希，每个数据两个long：hi、lo
+        long[] keys = new long[size << 1];
+        MurmurHash3.Hasher hasher = HASHER.get();
+        Object[] single = new Object[1];
+        for (int i = 0; i < size; i++) {
+            Object object = objects.get(i);
+            Object[] key;
+            if (object instanceof Object[]) {
+                key = (Object[]) object;
+            } else {
+                single[0] = object;
+                key = single;
+            }
+            hasher.reset(0);
+            keyStrategy.hash(key, hasher);
+            hasher.finish();
+            keys[i << 1] = hasher.getH1();
+            keys[(i << 1) + 1] = hasher.getH2();
+        }
+        // 同一批中后出现的相同数据直接为重复，不依赖本地的标记：本地已满的时候前面的数据没有标记
+        markRepeats(keys, size, duplicates);
+
+        long now = CoarseClock.currentTimeMillis();
+        long expireTime = now + backExpireTimeMills;
+        int[] states = new int[size];
+        int missCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (duplicates.get(i)) {
+                states[i] = ShardedIdempotencyStore.PRESENT;
+                continue;
+            }
+            states[i] = dataMap.checkAndMark(keys[i << 1], keys[(i << 1) + 1], now, expireTime);
+            if (ShardedIdempotencyStore.PRESENT == states[i]) {
+                duplicates.set(i);
+            } else {
+                missCount++;
+            }
+        }
+        if (0 == missCount) {
+            return duplicates;
+        }
+
+        // 本地没有的数据一次查询第三方
+        List<String> missKeys = null;
+        Map<String, Long> expireTime3fMap = Collections.emptyMap();
+        if (outFlag && (null != selectHook || null != selectAllHook)) {
+            missKeys = new ArrayList<>(missCount);
+            for (int i = 0; i < size; i++) {
+                if (ShardedIdempotencyStore.PRESENT != states[i]) {
+                    missKeys.add(toHex(keys[i << 1], keys[(i << 1) + 1]));
+                }
+            }
+            expireTime3fMap = select(missKeys);
+        }
+        int miss = 0;
+        for (int i = 0; i < size; i++) {
+            if (ShardedIdempotencyStore.PRESENT == states[i]) {
+                continue;
+            }
+            Long expireTime3f = null == missKeys ? null : expireTime3fMap.get(missKeys.get(miss++));
+            if (resolveMiss(keys[i << 1], keys[(i << 1) + 1], states[i], now, expireTime, expireTime3f)) {
+                duplicates.set(i);
+            }
+        }
+        return duplicates;
+    }
+
+    /**
+     * 找出同一批中重复的key：开放寻址的哈希表中存放第一次出现的下标加1，后面再出现的下标标记为重复
+     */
+    private static void markRepeats(long[] keys, int size, BitSet duplicates) {
+        int[] table = new int[Math.max(2, Integer.highestOneBit(Math.max(1, size) - 1) << 2)];
+        int mask = table.length - 1;
+        for (int i = 0; i < size; i++) {
+            long hi = keys[i << 1];
+            long lo = keys[(i << 1) + 1];
+            for (int j = (int) lo & mask; ; j = (j + 1) & mask) {
+                int first = table[j] - 1;
+                if (first < 0) {
+                    table[j] = i + 1;
+                    break;
+                }
+                if (keys[first << 1] == hi && keys[(first << 1) + 1] == lo) {
+                    duplicates.set(i);
+                    break;
+                }
+            }
+        }
     }
 
     /**
@@ -156,23 +363,175 @@ public class Idempotency {
         return this;
     }
 
+    /**
+     * 设置数据的key的生成策略，需要在使用之前设置，修改之后之前的数据无法再匹配
+     */
+    public Idempotency setKeyStrategy(IdempotencyKeyStrategy keyStrategy) {
+        this.keyStrategy = keyStrategy;
+        return this;
+    }
+
     /**
      * 提供可修改的最大值，不过内存占用大小，需要自己计算
+     * <p>
+     * 注意：最大值按段分配，是近似的，见{@link ShardedIdempotencyStore}
      */
     public Idempotency setMaxDataSize(Integer size){
         this.maxDataSize = size;
+        // 堆外的槽位按照最大值一次分配，最大值变化之后重新分配
+        dataMap.setMaxDataSize(size);
+        return this;
+    }
+
+    /**
+     * 设置数据是否存放在堆外：堆外按照最大的数据个数一次分配好直接内存，每条数据24字节（负载0.5，约48字节），对GC没有影响，
+     * 适合千万级别的数据；已有的数据会迁移过去
+     */
+    public Idempotency setOffHeap(boolean offHeap) {
+        dataMap.setOffHeap(offHeap);
+        return this;
+    }
+
+    /**
+     * 设置数据超过最大值，并且没有注册第三方插入回调的时候，内存中数据的淘汰策略，默认为LRU
+     */
+    public Idempotency setEvictionPolicy(IdempotencyEvictionPolicy evictionPolicy) {
+        dataMap.setEvictionPolicy(evictionPolicy);
         return this;
     }
 
     /**
      * 注册第三方存储的数据插入回调
+     * <p>
+     * 注意：所有回调中的key为128位murmur哈希的32位十六进制字符串，之前的版本为SHA-256的64位十六进制字符串，
+     * 升级之后第三方存储中已有的数据不会再匹配，需要等这些数据过期，或者升级时清空
      */
     public Idempotency registerInsertHook(BiConsumer<String, Long> insertHook){
+        return registerInsertAllHook(entryList -> entryList.forEach(entry -> insertHook.accept(entry.getKey(), entry.getValue())));
+    }
+
+    /**
+     * 注册第三方存储的数据批量插入回调，数据按照批量大小或者等待时间合并之后调用，见{@link #setWriteBehind}；key的格式见{@link #registerInsertHook}
+     */
+    public synchronized Idempotency registerInsertAllHook(Consumer<List<Entry<String, Long>>> insertAllHook){
         this.outFlag = true;
-        this.insertHook = insertHook;
+        this.insertAllHook = insertAllHook;
+        restartWriteBehind();
+        return this;
+    }
+
+    /**
+     * 设置第三方数据批量插入的参数
+     *
+     * @param batchSize 每批最多的数据个数
+     * @param maxDelay 数据在队列中最多等待的时间
+     * @param queueCapacity 等待写入的队列的容量
+     * @param offerTimeout 队列满的时候最多等待的时间，超过之后丢弃数据并计数
+     */
+    public synchronized Idempotency setWriteBehind(int batchSize, long maxDelay, int queueCapacity, long offerTimeout, TimeUnit timeUnit) {
+        this.writeBehindBatchSize = batchSize;
+        this.writeBehindMaxDelayMillis = timeUnit.toMillis(maxDelay);
+        this.writeBehindQueueCapacity = queueCapacity;
+        this.writeBehindOfferTimeoutMillis = timeUnit.toMillis(offerTimeout);
+        if (null != insertAllHook) {
+            restartWriteBehind();
+        }
+        return this;
+    }
+
+    /**
+     * 第三方数据批量插入的统计，没有注册插入回调的时候为null
+     */
+    public IdempotencyWriteBehind getWriteBehind() {
+        return writeBehind;
+    }
+
+    /**
+     * 开启本地快照：先加载文件中没有过期的数据（重启预热），之后每隔interval将新增的数据追加到文件，进程退出的时候再写一次
+     *
+     * @param path 快照文件
+     * @param interval 追加的间隔
+     */
+    public synchronized Idempotency enableSnapshot(Path path, long interval, TimeUnit timeUnit) {
+        disableSnapshot();
+        IdempotencySnapshot newSnapshot = new IdempotencySnapshot(path, dataMap);
+        try {
+            newSnapshot.load(System.currentTimeMillis(), (hi, lo, expireTime) -> {
+                if (dataMap.put(hi, lo, expireTime)) {
+                    timingWheel.add(hi, lo, expireTime);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取快照失败：" + path, e);
+        }
+        snapshot = newSnapshot;
+        snapshotFuture = WRITER.scheduleWithFixedDelay(this::flushSnapshot, interval, interval, timeUnit);
+        snapshotShutdownHook = new Thread(this::flushSnapshot, "Thread-Idempotency-snapshot");
+        Runtime.getRuntime().addShutdownHook(snapshotShutdownHook);
         return this;
     }
 
+    /**
+     * 关闭本地快照，剩余的数据写入文件
+     */
+    public synchronized Idempotency disableSnapshot() {
+        IdempotencySnapshot current = snapshot;
+        if (null == current) {
+            return this;
+        }
+        snapshot = null;
+        snapshotFuture.cancel(false);
+        try {
+            Runtime.getRuntime().removeShutdownHook(snapshotShutdownHook);
+        } catch (IllegalStateException e) {
+            // 已经在退出中，由退出的回调写入
+        }
+        try {
+            current.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入快照失败", e);
+        }
+        return this;
+    }
+
+    /**
+     * 关闭实例：停止定时任务，写完快照和第三方的数据，清空本地数据，并从注册的实例中删除；默认的实例不能关闭
+     */
+    public synchronized void close() {
+        if (this == instance) {
+            throw new IllegalStateException(LOG_PRE + "默认的实例不能关闭");
+        }
+        INSTANCES.remove(name, this);
+        expireFuture.cancel(false);
+        deleteOtherFuture.cancel(false);
+        disableSnapshot();
+        IdempotencyWriteBehind stage = writeBehind;
+        if (null != stage) {
+            writeBehind = null;
+            stage.shutdown();
+        }
+        timingWheel.clear();
+        dataMap.clear();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 本地数据的个数
+     */
+    public int size() {
+        return dataMap.size();
+    }
+
+    /**
+     * 本地数据的槽位占用的内存的字节数
+     */
+    public long memoryUsage() {
+        return dataMap.memoryUsage();
+    }
+
     /**
      * 注册第三方存储的数据删除回调，
      */
@@ -183,7 +542,7 @@ public class Idempotency {
     }
 
     /**
-     * 注册第三方存储的数据选择回调
+     * 注册第三方存储的数据选择回调，key的格式见{@link #registerInsertHook}
      */
     public Idempotency registerSelectHook(Function<String, Long> selectHook){
         this.outFlag = true;
@@ -191,6 +550,15 @@ public class Idempotency {
         return this;
     }
 
+    /**
+     * 注册第三方存储的数据批量选择回调，用于{@link #containAll}，没有注册单个的选择回调的时候contain也使用该回调；key的格式见{@link #registerInsertHook}
+     */
+    public Idempotency registerSelectAllHook(Function<List<String>, Map<String, Long>> selectAllHook){
+        this.outFlag = true;
+        this.selectAllHook = selectAllHook;
+        return this;
+    }
+
     /**
      * 注册第三方存储的数据是否为空的回调
      */
@@ -201,99 +569,173 @@ public class Idempotency {
     }
 
     /**
-     * 对于不包含的数据加入其中，对于已经包含的则刷新数据的过期时间
+     * 处理本地没有的数据：第三方的数据没有过期则认为包含，并缓存到本地；否则放入本地，本地已满则走溢出的逻辑
+     *
+     * @param state 本地的判断结果，见{@link ShardedIdempotencyStore#checkAndMark}
+     * @param expireTime3f 第三方的数据的过期时间，没有则为null
+     * @return true：数据包含
      */
-    private void insert(String key) {
-        if (dataMap.size() <= maxDataSize){
-            dataMap.compute(key, (k, v) -> System.currentTimeMillis() + backExpireTimeMills);
-            return;
+    private boolean resolveMiss(long hi, long lo, int state, long now, long expireTime, Long expireTime3f) {
+        if (null != expireTime3f && CoarseClock.isBefore(now, expireTime3f)) {
+            if (ShardedIdempotencyStore.MARKED == state) {
+                dataMap.put(hi, lo, expireTime3f);
+                track(hi, lo, expireTime3f);
+            }
+            return true;
         }
 
-        // 如果设置了第三方配置，则对于超过阈值的数据则将数据存到第三方
-        if (null != insertHook) {
-            hookExecutor.execute(() -> insertHook.accept(key, System.currentTimeMillis() + backExpireTimeMills));
-        }else{
-            // 若没有设置第三方，则通过LRU覆盖对应的数据
+        if (ShardedIdempotencyStore.MARKED == state) {
+            track(hi, lo, expireTime);
+        } else {
+            overflow(hi, lo, expireTime);
         }
+        return false;
     }
 
     /**
-     * 判断当前是否含有对应的数据，如果包含还要看下该配置是否过期，如果过期则返回false
-     *
-     * @param key 需要校验的数据的key
-     * @return
-     * true: 数据包含，而且数据在过期时间内还可用
-     * false：数据不包含，或者数据包含，但是数据过期不可用
-     */
-    private boolean innerContain(String key) {
-        if (dataMap.containsKey(key)) {
-            return System.currentTimeMillis() <= dataMap.get(key);
-        }
-
-        // 如果开启第三方，且支持查询回调，则获取三方数据的过期时间，如果过期则返回
-        if(outFlag){
-            if (null != selectHook){
-                Long expireTime3f = selectHook.apply(key);
-                if (null != expireTime3f) {
-                    return System.currentTimeMillis() <= expireTime3f;
-                }
+     * 批量查询第三方的数据的过期时间，优先使用批量查询的回调
+     */
+    private Map<String, Long> select(List<String> keys) {
+        Function<List<String>, Map<String, Long>> hook = selectAllHook;
+        if (null != hook) {
+            Map<String, Long> expireTimeMap = hook.apply(keys);
+            return null == expireTimeMap ? Collections.emptyMap() : expireTimeMap;
+        }
+        Map<String, Long> expireTimeMap = new HashMap<>(keys.size() * 2);
+        for (String key : keys) {
+            Long expireTime = selectHook.apply(key);
+            if (null != expireTime) {
+                expireTimeMap.put(key, expireTime);
             }
         }
-        return false;
+        return expireTimeMap;
     }
 
     /**
-     * 数据唯一识别，这里采用将类的CanonicalName和对象的toString一起，然后再通过SHA256压缩以存储更多数据
+     * 本地数据已满的时候，存到第三方或者按照淘汰策略覆盖
      */
-    private String buildKey(Object... object) {
-        // 在循环中String禁止使用在内部+拼接
-        StringBuilder sb = new StringBuilder();
-        return Encrypt.encode(Stream.of(object)
-            .map(o-> sb
-                .append(o.getClass().getCanonicalName())
-                .append(":")
-                .append(JSON.toJSONString(o))
-                .toString())
-            .reduce((a,b)-> sb
-                .append(a)
-                .append("-")
-                .append(b)
-                .toString()).get());
+    private void overflow(long hi, long lo, long expireTime) {
+        // 如果设置了第三方配置，则对于超过阈值的数据则将数据存到第三方
+        IdempotencyWriteBehind stage = writeBehind;
+        if (null != stage) {
+            stage.submit(toHex(hi, lo), expireTime);
+        } else {
+            // 若没有设置第三方，则按照淘汰策略覆盖对应的数据
+            dataMap.putOrEvict(hi, lo, expireTime);
+            track(hi, lo, expireTime);
+        }
     }
 
     /**
-     * 用于将对象的字符压缩，放置数据的字符过长
+     * 新放入本地的数据：加入过期的时间轮，开启了快照则记录到快照中
      */
-    private static class Encrypt {
+    private void track(long hi, long lo, long expireTime) {
+        timingWheel.add(hi, lo, expireTime);
+        IdempotencySnapshot current = snapshot;
+        if (null != current) {
+            current.record(hi, lo, expireTime);
+        }
+    }
+
+    /**
+     * 快照写入文件，异常不抛出，避免定时任务被取消
+     */
+    private void flushSnapshot() {
+        IdempotencySnapshot current = snapshot;
+        if (null == current) {
+            return;
+        }
+        try {
+            current.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 重新创建批量异步写，旧的队列中的数据写完之后退出
+     */
+    private void restartWriteBehind() {
+        IdempotencyWriteBehind old = writeBehind;
+        writeBehind = new IdempotencyWriteBehind(WRITER, insertAllHook, writeBehindBatchSize, writeBehindMaxDelayMillis,
+            writeBehindQueueCapacity, writeBehindOfferTimeoutMillis);
+        if (null != old) {
+            old.shutdown();
+        }
+    }
+
+    /**
+     * 将128位的key转换为32个字符的十六进制字符串，只在调用第三方回调的时候使用
+     */
+    private static String toHex(long hi, long lo) {
+        char[] chars = new char[32];
+        for (int i = 0; i < 16; i++) {
+            chars[15 - i] = HEX_DIGITS[(int) (hi >>> (i << 2)) & 0xF];
+            chars[31 - i] = HEX_DIGITS[(int) (lo >>> (i << 2)) & 0xF];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 命名实例的构造器，没有设置的参数使用默认值：过期时间20秒，最大100万条，LRU淘汰，堆内存储
+     */
+    public static final class Builder {
+
+        private final String name;
+        private long expireTimeMills = TimeUnit.SECONDS.toMillis(20);
+        private int maxDataSize = DEFAULT_MAX_DATA_SIZE;
+        private IdempotencyEvictionPolicy evictionPolicy = IdempotencyEvictionPolicy.LRU;
+        private boolean offHeap;
+        private IdempotencyKeyStrategy keyStrategy = IdempotencyKeyStrategy.DEFAULT;
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        public Builder expire(long num, TimeUnit timeUnit) {
+            this.expireTimeMills = timeUnit.toMillis(num);
+            return this;
+        }
+
+        public Builder maxDataSize(int maxDataSize) {
+            this.maxDataSize = maxDataSize;
+            return this;
+        }
+
+        public Builder evictionPolicy(IdempotencyEvictionPolicy evictionPolicy) {
+            this.evictionPolicy = evictionPolicy;
+            return this;
+        }
+
+        public Builder offHeap(boolean offHeap) {
+            this.offHeap = offHeap;
+            return this;
+        }
+
+        public Builder keyStrategy(IdempotencyKeyStrategy keyStrategy) {
+            this.keyStrategy = keyStrategy;
+            return this;
+        }
 
         /**
-         * 利用java原生的摘要实现SHA256加密
+         * 创建实例并按照名字注册
          *
-         * @param str 加密后的报文
+         * @throws IllegalStateException 名字已经存在
          */
-        private static String encode(String str) {
-            MessageDigest messageDigest;
-            String encodeStr = "";
-            try {
-                messageDigest = MessageDigest.getInstance("SHA-256");
-                messageDigest.update(str.getBytes("UTF-8"));
-
-                // 将byte 转换为字符展示出来
-                StringBuilder stringBuffer = new StringBuilder();
-                String temp;
-                for (byte aByte : messageDigest.digest()) {
-                    temp = Integer.toHexString(aByte & 0xFF);
-                    if (temp.length() == 1) {
-                        //1得到一位的进行补0操作
-                        stringBuffer.append("0");
-                    }
-                    stringBuffer.append(temp);
+        public Idempotency build() {
+            synchronized (INSTANCES) {
+                if (INSTANCES.containsKey(name)) {
+                    throw new IllegalStateException(LOG_PRE + "实例已经存在：" + name);
                 }
-                encodeStr = stringBuffer.toString();
-            } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
-                e.printStackTrace();
+                Idempotency idempotency = new Idempotency(name);
+                idempotency.backExpireTimeMills = expireTimeMills;
+                idempotency.keyStrategy = keyStrategy;
+                idempotency.setMaxDataSize(maxDataSize);
+                idempotency.setEvictionPolicy(evictionPolicy);
+                idempotency.setOffHeap(offHeap);
+                INSTANCES.put(name, idempotency);
+                return idempotency;
             }
-            return encodeStr;
         }
     }
 }
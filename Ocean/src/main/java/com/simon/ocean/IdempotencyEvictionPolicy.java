@@ -0,0 +1,24 @@
+package com.simon.ocean;
+
+/**
+ * 幂等数据超过最大个数，并且没有第三方存储的时候，内存中数据的淘汰策略
+ *
+ * @author shizi
+ * @since 2026-10-18 19:33:08
+ */
+public enum IdempotencyEvictionPolicy {
+
+    /**
+     * 近似LRU：CLOCK算法，每个数据一个访问标记（新数据没有，再次访问之后才有），淘汰时指针循环扫描，有标记的清除标记跳过，没有标记的淘汰
+     */
+    LRU,
+    /**
+     * 按照过期时间先进先出：随机采样几个数据，淘汰其中最早过期的
+     */
+    FIFO,
+    /**
+     * W-TinyLFU：用{@link FrequencySketch}记录访问频率，新数据总是先放入每个段约1%的准入窗口；
+     * 窗口满了之后最早进入窗口的数据和按照LRU选出的数据比较频率，频率高于它才留下，否则淘汰窗口的数据
+     */
+    TINY_LFU
+}
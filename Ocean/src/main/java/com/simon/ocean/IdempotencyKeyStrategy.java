@@ -0,0 +1,72 @@
+package com.simon.ocean;
+
+import com.alibaba.fastjson.JSON;
+
+/**
+ * 幂等数据的key的生成策略：将数据写入128位的哈希中，{@link Idempotency}只存储哈希的两个long
+ * <p>
+ * 默认的策略{@link #DEFAULT}按照类名和值写入，常见的类型（字符串、数字、枚举等）直接写入，不需要转换；
+ * 业务上有唯一标识的时候，可以自定义只写入标识，比如：(objects, hasher) -> hasher.putLong(((Order) objects[0]).getId())
+ *
+ * @author shizi
+ * @since 2026-10-18 19:04:31
+ */
+@FunctionalInterface
+public interface IdempotencyKeyStrategy {
+
+    IdempotencyKeyStrategy DEFAULT = new DefaultStrategy();
+
+    /**
+     * 将数据写入哈希，不需要调用{@link MurmurHash3.Hasher#finish()}
+     *
+     * @param objects 需要判断幂等的数据
+     * @param hasher 已经重置过的哈希
+     */
+    void hash(Object[] objects, MurmurHash3.Hasher hasher);
+
+    /**
+     * 默认的策略：每个数据依次写入类名和值，字符串类的值前面写入长度，避免不同的拆分得到同样的字节；
+     * 其他不认识的类型按照JSON序列化之后写入
+     */
+    final class DefaultStrategy implements IdempotencyKeyStrategy {
+
+        private static final byte NULL = 0;
+        private static final byte SEPARATOR = 1;
+
+        @Override
+        public void hash(Object[] objects, MurmurHash3.Hasher hasher) {
+            for (Object object : objects) {
+                if (null == object) {
+                    hasher.putByte(NULL);
+                    continue;
+                }
+                putString(hasher, object.getClass().getName());
+                hasher.putByte(SEPARATOR);
+                if (object instanceof CharSequence) {
+                    putString(hasher, (CharSequence) object);
+                } else if (object instanceof Long || object instanceof Integer || object instanceof Short
+                    || object instanceof Byte) {
+                    hasher.putLong(((Number) object).longValue());
+                } else if (object instanceof Double || object instanceof Float) {
+                    hasher.putLong(Double.doubleToLongBits(((Number) object).doubleValue()));
+                } else if (object instanceof Boolean) {
+                    hasher.putByte((Boolean) object ? (byte) 1 : (byte) 0);
+                } else if (object instanceof Character) {
+                    hasher.putChar((Character) object);
+                } else if (object instanceof Enum) {
+                    putString(hasher, ((Enum<?>) object).name());
+                } else if (object instanceof byte[]) {
+                    hasher.putInt(((byte[]) object).length);
+                    hasher.putBytes((byte[]) object);
+                } else {
+                    putString(hasher, JSON.toJSONString(object));
+                }
+            }
+        }
+
+        private static void putString(MurmurHash3.Hasher hasher, CharSequence chars) {
+            hasher.putInt(chars.length());
+            hasher.putChars(chars);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.simon.ocean;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 幂等数据的本地快照：用于发布重启之后的预热，不需要再访问第三方存储
+ * <p>
+ * 文件为只追加的格式（小端序）：8个字节的文件头（魔数、版本），后面是连续的24字节的记录：hi、lo、过期时间。
+ *  1.增量：插入的数据先记录到内存的缓冲中，定时追加到文件末尾，每次只写新增的数据
+ *  2.压缩：文件中的记录超过存储中数据个数的2倍之后，将存储中还没有过期的数据重写到临时文件，再原子替换
+ *  3.加载：按块流式读取，跳过已经过期的记录，同一个key后面的记录覆盖前面的；进程崩溃留下的不完整的记录直接忽略
+ * <p>
+ * 注意：淘汰和过期删除不记录到文件中，加载时按照过期时间过滤
+ *
+ * @author shizi
+ * @since 2026-10-18 20:41:37
+ */
+final class IdempotencySnapshot {
+
+    private static final int MAGIC = 0x4944454D;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_BYTES = ShardedIdempotencyStore.SLOT_BYTES;
+    /**
+     * 读写的缓冲区大小，需要是记录大小的整数倍
+     */
+    private static final int BUFFER_SIZE = RECORD_BYTES * 4096;
+    /**
+     * 文件中的记录个数超过这个值之后才考虑压缩
+     */
+    private static final long MIN_COMPACT_RECORDS = 64 * 1024;
+    /**
+     * 缓冲的分片个数，按照hi的高位分片，减少多线程记录时的竞争
+     */
+    private static final int STRIPE_BITS = 4;
+    private static final int ENTRY_LONGS = 3;
+    private final Path path;
+    private final ShardedIdempotencyStore store;
+    private final Stripe[] stripes = new Stripe[1 << STRIPE_BITS];
+    private FileChannel channel;
+    /**
+     * 文件中的记录个数
+     */
+    private long recordCount;
+    private boolean closed;
+
+    IdempotencySnapshot(Path path, ShardedIdempotencyStore store) {
+        this.path = path.toAbsolutePath();
+        this.store = store;
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * 记录新插入的数据，下次flush的时候追加到文件
+     */
+    void record(long hi, long lo, long expireTime) {
+        stripes[(int) (hi >>> (64 - STRIPE_BITS))].add(hi, lo, expireTime);
+    }
+
+    /**
+     * 加载文件中没有过期的数据
+     *
+     * @param now 当前时间
+     * @return 加载的记录个数
+     */
+    synchronized int load(long now, ShardedIdempotencyStore.EntryVisitor visitor) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return 0;
+        }
+        int loaded = 0;
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (!readHeader(in, buffer)) {
+                return 0;
+            }
+            buffer.clear();
+            while (in.read(buffer) > 0) {
+                buffer.flip();
+                while (buffer.remaining() >= RECORD_BYTES) {
+                    long hi = buffer.getLong();
+                    long lo = buffer.getLong();
+                    long expireTime = buffer.getLong();
+                    if (expireTime > now) {
+                        visitor.visit(hi, lo, expireTime);
+                        loaded++;
+                    }
+                }
+                // 不完整的记录留到下次读取
+                buffer.compact();
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * 将缓冲中的数据追加到文件，文件中的过期记录过多的时候压缩
+     */
+    synchronized void flush() throws IOException {
+        if (closed) {
+            return;
+        }
+        if (null == channel) {
+            open();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        long written = 0;
+        for (Stripe stripe : stripes) {
+            Stripe drained = stripe.drain();
+            long[] entries = drained.entries;
+            for (int base = 0; base < drained.size; base += ENTRY_LONGS) {
+                if (buffer.remaining() < RECORD_BYTES) {
+                    writeFully(channel, buffer);
+                }
+                buffer.putLong(entries[base]).putLong(entries[base + 1]).putLong(entries[base + 2]);
+                written++;
+            }
+        }
+        writeFully(channel, buffer);
+        if (written > 0) {
+            channel.force(false);
+            recordCount += written;
+        }
+        if (recordCount > MIN_COMPACT_RECORDS && recordCount > 2L * store.size()) {
+            compact();
+        }
+    }
+
+    /**
+     * 将存储中没有过期的数据重写为新的文件
+     */
+    synchronized void compact() throws IOException {
+        // 先清空缓冲：这之前记录的数据都已经在存储中了，这之后记录的数据下次flush时追加
+        for (Stripe stripe : stripes) {
+            stripe.drain();
+        }
+        long now = System.currentTimeMillis();
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION);
+            IOException[] error = new IOException[1];
+            store.forEach((hi, lo, expireTime) -> {
+                if (null != error[0] || expireTime <= now) {
+                    return;
+                }
+                try {
+                    if (buffer.remaining() < RECORD_BYTES) {
+                        writeFully(out, buffer);
+                    }
+                    buffer.putLong(hi).putLong(lo).putLong(expireTime);
+                } catch (IOException e) {
+                    error[0] = e;
+                }
+            });
+            if (null != error[0]) {
+                throw error[0];
+            }
+            writeFully(out, buffer);
+            out.force(true);
+        }
+        closeChannel();
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        open();
+    }
+
+    /**
+     * 写入剩余的数据并关闭文件
+     */
+    synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            closed = true;
+            closeChannel();
+        }
+    }
+
+    long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * 以追加的方式打开文件：文件头不对的重写文件头，末尾不完整的记录截掉，保证后面追加的记录是对齐的
+     */
+    private void open() throws IOException {
+        Path parent = path.getParent();
+        if (null != parent) {
+            Files.createDirectories(parent);
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        if (!readHeader(channel, buffer)) {
+            channel.truncate(0);
+            buffer.clear();
+            buffer.putInt(MAGIC).putInt(VERSION);
+            channel.position(0);
+            writeFully(channel, buffer);
+        }
+        recordCount = (channel.size() - HEADER_BYTES) / RECORD_BYTES;
+        long validSize = HEADER_BYTES + recordCount * RECORD_BYTES;
+        if (channel.size() != validSize) {
+            channel.truncate(validSize);
+        }
+        channel.position(validSize);
+    }
+
+    private void closeChannel() throws IOException {
+        if (null != channel) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * 从文件开头读取并校验文件头
+     */
+    private static boolean readHeader(FileChannel in, ByteBuffer buffer) throws IOException {
+        buffer.clear().limit(HEADER_BYTES);
+        in.position(0);
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer) < 0) {
+                return false;
+            }
+        }
+        buffer.flip();
+        return buffer.getInt() == MAGIC && buffer.getInt() == VERSION;
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * 记录的缓冲，数据连续存放在long数组中，每个数据3个long：hi、lo、过期时间
+     */
+    private static final class Stripe {
+
+        private static final int INITIAL_CAPACITY = 64 * ENTRY_LONGS;
+        private long[] entries;
+        private int size;
+
+        private Stripe() {
+            this(INITIAL_CAPACITY);
+        }
+
+        private Stripe(int length) {
+            entries = new long[length];
+        }
+
+        private synchronized void add(long hi, long lo, long expireTime) {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size << 1);
+            }
+            entries[size] = hi;
+            entries[size + 1] = lo;
+            entries[size + 2] = expireTime;
+            size += ENTRY_LONGS;
+        }
+
+        /**
+         * 取出所有的数据，缓冲重新置为空
+         */
+        private synchronized Stripe drain() {
+            Stripe drained = new Stripe(0);
+            drained.entries = entries;
+            drained.size = size;
+            entries = new long[INITIAL_CAPACITY];
+            size = 0;
+            return drained;
+        }
+    }
+}
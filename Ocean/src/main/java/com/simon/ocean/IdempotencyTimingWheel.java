@@ -0,0 +1,150 @@
+package com.simon.ocean;
+
+import java.util.Arrays;
+
+/**
+ * 幂等数据过期清理的时间轮，替代每5秒一次的全量扫描
+ * <p>
+ * 时间轮分为wheelSize个桶，每个桶对应tickMillis的时间：数据在插入的时候按照过期时间放到对应的桶中，守护线程每个tick推进一格，
+ * 只处理到期的那个桶，因此每次清理的代价与到期的数据个数成正比，清理的工作也均匀分散到每个tick中，不会集中爆发。
+ * 过期时间超过一圈的数据在桶中保留，等到后面的轮次再处理；数据在过期之前被刷新了过期时间，则按照存储中的过期时间判断，不会误删
+ * <p>
+ * 注意：add可以多线程调用，advance只能由一个线程调用
+ *
+ * @author shizi
+ * @since 2026-10-18 18:37:52
+ */
+final class IdempotencyTimingWheel {
+
+    /**
+     * 桶的初始容量
+     */
+    private static final int BUCKET_INITIAL_CAPACITY = 16;
+    /**
+     * 每个数据的long的个数：hi、lo、过期时间
+     */
+    private static final int ENTRY_LONGS = 3;
+    private final ShardedIdempotencyStore store;
+    private final long tickMillis;
+    private final int wheelMask;
+    private final Bucket[] buckets;
+    /**
+     * 下一个要处理的tick
+     */
+    private volatile long currentTick;
+
+    /**
+     * @param wheelSize 桶的个数，需要是2的幂
+     */
+    IdempotencyTimingWheel(ShardedIdempotencyStore store, long tickMillis, int wheelSize, long now) {
+        if (Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("wheelSize 需要是2的幂");
+        }
+        this.store = store;
+        this.tickMillis = tickMillis;
+        this.wheelMask = wheelSize - 1;
+        this.buckets = new Bucket[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new Bucket();
+        }
+        this.currentTick = now / tickMillis;
+    }
+
+    /**
+     * 添加数据的过期时间，已经过了的tick放到下一个要处理的桶中
+     */
+    void add(long hi, long lo, long expireTime) {
+        long tick = Math.max(expireTime / tickMillis, currentTick);
+        buckets[(int) tick & wheelMask].add(hi, lo, expireTime);
+    }
+
+    /**
+     * 推进到当前时间，处理所有已经走过的桶
+     *
+     * @return 清理的数据个数
+     */
+    int advance(long now) {
+        long targetTick = now / tickMillis;
+        long tick = currentTick;
+        // 落后超过一圈（比如进程暂停），每个桶只需要处理一次
+        if (targetTick - tick > buckets.length) {
+            tick = targetTick - buckets.length;
+        }
+        int removed = 0;
+        for (; tick < targetTick; tick++) {
+            removed += expire(buckets[(int) tick & wheelMask], now);
+            currentTick = tick + 1;
+        }
+        return removed;
+    }
+
+    void clear() {
+        for (Bucket bucket : buckets) {
+            bucket.drain();
+        }
+    }
+
+    long getTickMillis() {
+        return tickMillis;
+    }
+
+    private int expire(Bucket bucket, long now) {
+        Bucket drained = bucket.drain();
+        int removed = 0;
+        long[] entries = drained.entries;
+        for (int base = 0; base < drained.size; base += ENTRY_LONGS) {
+            long hi = entries[base];
+            long lo = entries[base + 1];
+            long expireTime = entries[base + 2];
+            if (expireTime > now) {
+                // 还需要再转几圈
+                bucket.add(hi, lo, expireTime);
+            } else if (store.removeIfExpired(hi, lo, now)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 桶，数据连续存放在long数组中，每个数据3个long：hi、lo、过期时间
+     */
+    private static final class Bucket {
+
+        private long[] entries;
+        /**
+         * 已经使用的long的个数
+         */
+        private int size;
+
+        private Bucket() {
+            this(BUCKET_INITIAL_CAPACITY * ENTRY_LONGS);
+        }
+
+        private Bucket(int length) {
+            entries = new long[length];
+        }
+
+        private synchronized void add(long hi, long lo, long expireTime) {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size << 1);
+            }
+            entries[size] = hi;
+            entries[size + 1] = lo;
+            entries[size + 2] = expireTime;
+            size += ENTRY_LONGS;
+        }
+
+        /**
+         * 取出桶中所有的数据，桶重新置为空
+         */
+        private synchronized Bucket drain() {
+            Bucket drained = new Bucket(0);
+            drained.entries = entries;
+            drained.size = size;
+            entries = new long[BUCKET_INITIAL_CAPACITY * ENTRY_LONGS];
+            size = 0;
+            return drained;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.simon.ocean;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 幂等数据写入第三方存储的批量异步写（write-behind）
+ * <p>
+ * 数据先放入有界队列，由共用的写入线程按照批量大小或者等待时间（哪个先到按哪个）合并为一批，调用一次批量插入的回调，减少第三方存储的访问次数：
+ * 每隔maxDelay取出队列中所有的数据，队列中的数据凑满一批的时候立即提交一次写入。多个实例共用同一个写入线程（和快照写入共用，不和过期清理共用），批量插入的回调不要有太长的阻塞。
+ * 队列满的时候写入方最多等待offerTimeout（背压），仍然放不进去才丢弃，丢弃的个数会记录下来，不会静默丢失
+ * <p>
+ * 统计：
+ *  1.提交的个数
+ *  2.写入成功的个数和批次数
+ *  3.丢弃的个数
+ *  4.回调异常的批次数
+ *
+ * @author shizi
+ * @since 2026-10-18 20:02:45
+ */
+public final class IdempotencyWriteBehind {
+
+    private final BlockingQueue<Entry<String, Long>> queue;
+    private final int batchSize;
+    private final long offerTimeoutMillis;
+    private final Consumer<List<Entry<String, Long>>> insertAllHook;
+    private final ScheduledExecutorService scheduler;
+    private final ScheduledFuture<?> flushFuture;
+    /**
+     * 凑满一批之后提交的写入任务是否还没有执行，避免重复提交
+     */
+    private final AtomicBoolean flushPending = new AtomicBoolean();
+    private volatile boolean running = true;
+    private final LongAdder submittedCount = new LongAdder();
+    private final LongAdder flushedCount = new LongAdder();
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+
+    /**
+     * @param scheduler 执行写入的定时线程，不要和过期清理共用
+     * @param insertAllHook 批量插入的回调
+     * @param batchSize 每批最多的数据个数
+     * @param maxDelayMillis 数据在队列中最多等待的时间
+     * @param queueCapacity 队列的容量
+     * @param offerTimeoutMillis 队列满的时候写入方最多等待的时间，0表示不等待
+     */
+    IdempotencyWriteBehind(ScheduledExecutorService scheduler, Consumer<List<Entry<String, Long>>> insertAllHook,
+        int batchSize, long maxDelayMillis, int queueCapacity, long offerTimeoutMillis) {
+        this.scheduler = scheduler;
+        this.insertAllHook = insertAllHook;
+        this.batchSize = batchSize;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        long delay = Math.max(1, maxDelayMillis);
+        this.flushFuture = scheduler.scheduleWithFixedDelay(this::flushAll, delay, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 提交数据
+     *
+     * @return true：已经放入队列；false：队列已满或者已经停止，数据被丢弃
+     */
+    boolean submit(String key, long expireTime) {
+        submittedCount.increment();
+        if (!running) {
+            droppedCount.increment();
+            return false;
+        }
+        Entry<String, Long> entry = new SimpleImmutableEntry<>(key, expireTime);
+        boolean offered;
+        try {
+            offered = offerTimeoutMillis > 0 ? queue.offer(entry, offerTimeoutMillis, TimeUnit.MILLISECONDS) : queue.offer(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            offered = false;
+        }
+        if (!offered) {
+            droppedCount.increment();
+            return false;
+        }
+        // 凑满一批则不再等待
+        if (queue.size() >= batchSize && flushPending.compareAndSet(false, true)) {
+            scheduler.execute(this::flushAll);
+        }
+        return true;
+    }
+
+    /**
+     * 停止定时写入，队列中剩余的数据由写入线程写完
+     */
+    void shutdown() {
+        running = false;
+        flushFuture.cancel(false);
+        scheduler.execute(this::flushAll);
+    }
+
+    public long getSubmittedCount() {
+        return submittedCount.sum();
+    }
+
+    public long getFlushedCount() {
+        return flushedCount.sum();
+    }
+
+    public long getBatchCount() {
+        return batchCount.sum();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    /**
+     * 队列中等待写入的数据个数
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * 按照批量大小写完队列中当前所有的数据
+     */
+    private synchronized void flushAll() {
+        flushPending.set(false);
+        List<Entry<String, Long>> batch;
+        do {
+            batch = new ArrayList<>(batchSize);
+            queue.drainTo(batch, batchSize);
+            if (!batch.isEmpty()) {
+                flush(batch);
+            }
+        } while (batch.size() == batchSize);
+    }
+
+    private void flush(List<Entry<String, Long>> batch) {
+        try {
+            insertAllHook.accept(batch);
+            flushedCount.add(batch.size());
+            batchCount.increment();
+        } catch (RuntimeException e) {
+            failedCount.increment();
+            e.printStackTrace();
+        }
+    }
+}
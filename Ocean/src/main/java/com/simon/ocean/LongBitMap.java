@@ -0,0 +1,167 @@
+package com.simon.ocean;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * long类型数据的BitMap，适用于雪花id、订单号这种超过int范围的数据
+ * <p>
+ * 数据的存储布局跟{@link BitMap}一样，都是按照int数组的位来标记，不同的是这里将整个long的空间按照固定大小拆分成页，
+ * 页只有在插入数据的时候才会分配，因此即使数据覆盖了2^63这么大的范围，也只会为实际用到的区域分配内存
+ * <p>
+ * 功能：
+ *  1.添加数据
+ *  2.清理数据
+ *  3.判断存在否
+ *  4.插入的数据的个数
+ * 注意：数据按照无符号的64位处理，负数也可以存储；该类非线程安全
+ *
+ * @author shizi
+ * @since 2026-10-18 10:48:05
+ */
+public class LongBitMap {
+
+    private final static int SHIFT = 5;
+    /**
+     * int占用bit大小，32
+     */
+    private final static int BITWORD = 1 << SHIFT;
+    /**
+     * 掩码
+     */
+    private final static int MASK = BITWORD - 1;
+    /**
+     * 每页int的个数的位数，默认每页1024个int，即4KB，可以标记32768个数据
+     */
+    private final static int DEFAULT_PAGE_POWER = 10;
+    /**
+     * 每页int个数的位数
+     */
+    private final int pagePower;
+    /**
+     * 页内bit的掩码
+     */
+    private final long pageMask;
+    /**
+     * 已经分配的页：key为页号，value为页内的数据标记数组
+     */
+    private final Map<Long, int[]> pageMap = new HashMap<>();
+    /**
+     * 最近访问的页，连续的数据大部分都会落在同一页上，这里缓存下避免每次都查询map
+     */
+    private long lastPageIndex = -1;
+    private int[] lastPage;
+    /**
+     * 数据的个数
+     */
+    private long cardinality;
+
+    public LongBitMap() {
+        this(DEFAULT_PAGE_POWER);
+    }
+
+    /**
+     * @param pagePower 每页int个数的位数，比如10表示每页2^10个int
+     */
+    public LongBitMap(int pagePower) {
+        if (pagePower < 0 || pagePower > 20) {
+            throw new IllegalArgumentException("pagePower 需要在[0, 20]之间");
+        }
+        this.pagePower = pagePower;
+        this.pageMask = (1L << (pagePower + SHIFT)) - 1;
+    }
+
+    /**
+     * 保存数据
+     */
+    public void insert(long data) {
+        int[] page = getPage(data >>> (pagePower + SHIFT), true);
+        int index = (int) ((data & pageMask) >>> SHIFT);
+        int before = page[index];
+        page[index] = before | (1 << (data & MASK));
+        if (before != page[index]) {
+            cardinality++;
+        }
+    }
+
+    /**
+     * 判断是否包含对应的数据
+     * @return 包含返回true，否则false
+     */
+    public boolean contain(long data) {
+        int[] page = getPage(data >>> (pagePower + SHIFT), false);
+        if (null == page) {
+            return false;
+        }
+        return (page[(int) ((data & pageMask) >>> SHIFT)] & (1 << (data & MASK))) != 0;
+    }
+
+    /**
+     * 清理数据
+     */
+    public void delete(long data) {
+        int[] page = getPage(data >>> (pagePower + SHIFT), false);
+        if (null == page) {
+            return;
+        }
+        int index = (int) ((data & pageMask) >>> SHIFT);
+        int before = page[index];
+        page[index] = before & ~(1 << (data & MASK));
+        if (before != page[index]) {
+            cardinality--;
+        }
+    }
+
+    /**
+     * 返回bitmap中元素的个数
+     *
+     * @return bitmap中元素的个数
+     */
+    public long count() {
+        return cardinality;
+    }
+
+    /**
+     * 已经分配的页的个数
+     */
+    public int pageCount() {
+        return pageMap.size();
+    }
+
+    /**
+     * 当前占用的内存大小（估算值），只计算已经分配的页
+     *
+     * @return 字节数
+     */
+    public long memoryUsage() {
+        // 每页：数组头16byte + 数据；HashMap中每个节点（Node + Long）大概64byte
+        return pageMap.size() * (16L + (4L << pagePower) + 64L);
+    }
+
+    /**
+     * 清理所有的数据，并释放分配的页
+     */
+    public void clear() {
+        pageMap.clear();
+        lastPageIndex = -1;
+        lastPage = null;
+        cardinality = 0;
+    }
+
+    private int[] getPage(long pageIndex, boolean create) {
+        if (pageIndex == lastPageIndex && null != lastPage) {
+            return lastPage;
+        }
+        int[] page = pageMap.get(pageIndex);
+        if (null == page) {
+            if (!create) {
+                return null;
+            }
+            page = new int[1 << pagePower];
+            pageMap.put(pageIndex, page);
+        }
+        lastPageIndex = pageIndex;
+        lastPage = page;
+        return page;
+    }
+}
@@ -0,0 +1,239 @@
+package com.simon.ocean;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于内存映射文件的BitMap，数据存放在堆外，重启之后直接映射文件即可使用，不需要重新构建
+ * <p>
+ * 文件格式（小端）：
+ * <pre>
+ *     int  magic      固定为0x4249544D（"BITM"）
+ *     int  version    版本号，当前为1
+ *     int  dataSize   long的个数
+ *     int  cardinality 数据的个数
+ *     long[dataSize]  数据标记数组，布局与{@link BitMap}相同
+ * </pre>
+ * 修改都是直接写入映射的内存中，由操作系统异步刷盘，也可以调用{@link #force()}或者{@link #scheduleForce(long, TimeUnit)}主动刷盘
+ * <p>
+ * 功能：
+ *  1.添加数据
+ *  2.清理数据
+ *  3.判断存在否
+ *  4.插入的数据的个数
+ * 注意：该类非线程安全
+ *
+ * @author shizi
+ * @since 2026-10-18 12:05:17
+ */
+public class MappedBitMap implements Closeable {
+
+    private final static int SHIFT = 6;
+    /**
+     * long占用bit大小，64
+     */
+    private final static int BITWORD = 1 << SHIFT;
+    /**
+     * 掩码
+     */
+    private final static int MASK = BITWORD - 1;
+    private final static int MAGIC = 0x4249544D;
+    private final static int VERSION = 1;
+    /**
+     * 文件头的大小
+     */
+    private final static int HEADER_SIZE = 16;
+    private final static int DATA_SIZE_OFFSET = 8;
+    private final static int CARDINALITY_OFFSET = 12;
+    /**
+     * 刷盘的守护线程
+     */
+    private static final ScheduledThreadPoolExecutor SCHEDULER = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread thread = new Thread(r, "Thread-MappedBitMap-force");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    /**
+     * long分配的个数
+     */
+    private final int dataSize;
+    private int cardinality;
+    private ScheduledFuture<?> forceFuture;
+
+    /**
+     * 打开或者创建对应的文件，如果文件已经存在，则直接映射已有的数据；文件容量小于maxValue的时候会扩容，数据保留
+     *
+     * @param filePath 文件路径
+     * @param maxValue 可以存储的最大的数据
+     */
+    public MappedBitMap(String filePath, int maxValue) {
+        if (maxValue < 0) {
+            throw new IllegalArgumentException("maxValue 不可为负数");
+        }
+        this.path = Paths.get(filePath);
+        FileChannel fileChannel;
+        try {
+            fileChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("映射文件失败：" + filePath, e);
+        }
+        // 文件头校验或者映射失败的时候关闭已经打开的文件
+        try {
+            int requestSize = (maxValue >> SHIFT) + 1;
+            int existSize = readExistDataSize(fileChannel);
+            this.dataSize = Math.max(requestSize, existSize);
+            this.buffer = fileChannel.map(MapMode.READ_WRITE, 0, HEADER_SIZE + (long) dataSize * 8);
+        } catch (IOException e) {
+            closeOnFailure(fileChannel, e);
+            throw new UncheckedIOException("映射文件失败：" + filePath, e);
+        } catch (RuntimeException e) {
+            closeOnFailure(fileChannel, e);
+            throw e;
+        }
+        this.channel = fileChannel;
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(DATA_SIZE_OFFSET, dataSize);
+        this.cardinality = buffer.getInt(CARDINALITY_OFFSET);
+    }
+
+    /**
+     * 保存数据
+     */
+    public void insert(int data) {
+        int offset = offset(data);
+        long before = buffer.getLong(offset);
+        long after = before | (1L << (data & MASK));
+        if (before != after) {
+            buffer.putLong(offset, after);
+            buffer.putInt(CARDINALITY_OFFSET, ++cardinality);
+        }
+    }
+
+    /**
+     * 判断是否包含对应的数据
+     * @return 包含返回true，否则false
+     */
+    public boolean contain(int data) {
+        int index = data >> SHIFT;
+        if (data < 0 || index >= dataSize) {
+            return false;
+        }
+        return (buffer.getLong(HEADER_SIZE + (index << 3)) & (1L << (data & MASK))) != 0;
+    }
+
+    /**
+     * 清理数据
+     */
+    public void delete(int data) {
+        int offset = offset(data);
+        long before = buffer.getLong(offset);
+        long after = before & ~(1L << (data & MASK));
+        if (before != after) {
+            buffer.putLong(offset, after);
+            buffer.putInt(CARDINALITY_OFFSET, --cardinality);
+        }
+    }
+
+    /**
+     * 返回bitmap中元素的个数
+     *
+     * @return bitmap中元素的个数
+     */
+    public int count() {
+        return cardinality;
+    }
+
+    /**
+     * 重新统计元素的个数，用于进程异常退出后，文件头中的个数与数据可能不一致的场景
+     */
+    public int recount() {
+        int cnt = 0;
+        for (int i = 0; i < dataSize; i++) {
+            cnt += Long.bitCount(buffer.getLong(HEADER_SIZE + (i << 3)));
+        }
+        cardinality = cnt;
+        buffer.putInt(CARDINALITY_OFFSET, cnt);
+        return cnt;
+    }
+
+    /**
+     * 将修改的数据刷到磁盘
+     */
+    public void force() {
+        buffer.force();
+    }
+
+    /**
+     * 定时刷盘，重复调用会覆盖之前的配置
+     */
+    public synchronized void scheduleForce(long period, TimeUnit timeUnit) {
+        if (null != forceFuture) {
+            forceFuture.cancel(false);
+        }
+        forceFuture = SCHEDULER.scheduleWithFixedDelay(this::force, period, period, timeUnit);
+    }
+
+    /**
+     * 停止定时刷盘，刷盘后关闭文件
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (null != forceFuture) {
+            forceFuture.cancel(false);
+            forceFuture = null;
+        }
+        force();
+        channel.close();
+    }
+
+    private int offset(int data) {
+        int index = data >> SHIFT;
+        if (data < 0 || index >= dataSize) {
+            throw new BitMap.SizeOutOfBoundsException();
+        }
+        return HEADER_SIZE + (index << 3);
+    }
+
+    /**
+     * 读取已有文件中long的个数，新文件返回0
+     */
+    private int readExistDataSize(FileChannel channel) throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            return 0;
+        }
+        MappedByteBuffer header = channel.map(MapMode.READ_ONLY, 0, HEADER_SIZE);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getInt(0) != MAGIC) {
+            throw new IllegalStateException("文件格式不正确：" + path);
+        }
+        if (header.getInt(4) != VERSION) {
+            throw new IllegalStateException("文件版本不支持：" + header.getInt(4));
+        }
+        return header.getInt(DATA_SIZE_OFFSET);
+    }
+
+    private static void closeOnFailure(FileChannel channel, Exception cause) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+    }
+}
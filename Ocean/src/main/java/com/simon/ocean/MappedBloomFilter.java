@@ -0,0 +1,234 @@
+package com.simon.ocean;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Function;
+
+/**
+ * 只读的内存映射布隆过滤器，多个进程映射同一个文件时共享操作系统的页缓存，不需要各自在堆内重新构建
+ * <p>
+ * 文件由{@link BloomFilter#writeTo(Path)}生成，格式（小端）：
+ * <pre>
+ *     int  magic      固定为0x424C4F4D（"BLOM"）
+ *     int  version    版本号，当前为1
+ *     long bitSize    位数组的大小：m
+ *     int  hashNum    哈希函数的个数：k
+ *     int  reserved   保留，为0
+ *     long seed       哈希种子
+ *     long insertNum  插入的数据的个数：n
+ *     long bitCount   位数组中1的个数
+ *     long[m / 64]    位数组，布局与{@link BloomFilter}相同
+ * </pre>
+ * 哈希的计算与{@link BloomFilter}完全相同，同样的funnel下判断结果一致
+ * <p>
+ * 功能：
+ *  1.判断可能存在否
+ *  2.当前的误判率
+ * 注意：文件大小不能超过2GB；该类线程安全
+ *
+ * @author shizi
+ * @since 2026-10-18 17:42:19
+ */
+public class MappedBloomFilter<T> implements Closeable {
+
+    final static int MAGIC = 0x424C4F4D;
+    final static int VERSION = 1;
+    /**
+     * 文件头的大小，8的倍数，保证位数组按照long对齐
+     */
+    final static int HEADER_SIZE = 48;
+    /**
+     * 写文件时每次写入的缓冲区大小
+     */
+    private final static int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final LongBuffer words;
+    private final long bitSize;
+    private final int hashNum;
+    private final long seed;
+    private final long insertNum;
+    private final long bitCount;
+    private final Function<? super T, byte[]> funnel;
+
+    private MappedBloomFilter(Path path, Function<? super T, byte[]> funnel) throws IOException {
+        FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ);
+        MappedByteBuffer buffer;
+        // 文件头校验或者映射失败的时候关闭已经打开的文件
+        try {
+            buffer = map(path, fileChannel);
+        } catch (IOException | RuntimeException e) {
+            closeOnFailure(fileChannel, e);
+            throw e;
+        }
+        this.channel = fileChannel;
+        this.bitSize = buffer.getLong(8);
+        this.hashNum = buffer.getInt(16);
+        this.seed = buffer.getLong(24);
+        this.insertNum = buffer.getLong(32);
+        this.bitCount = buffer.getLong(40);
+        buffer.position(HEADER_SIZE);
+        this.words = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        this.funnel = funnel;
+    }
+
+    /**
+     * 映射布隆过滤器文件
+     *
+     * @param funnel 对象转换为字节的函数，需要与写入文件的过滤器相同
+     */
+    public static <T> MappedBloomFilter<T> open(Path path, Function<? super T, byte[]> funnel) {
+        try {
+            return new MappedBloomFilter<>(path, funnel);
+        } catch (IOException e) {
+            throw new UncheckedIOException("映射文件失败：" + path, e);
+        }
+    }
+
+    /**
+     * 映射字符串的布隆过滤器文件，按照UTF-8转换为字节
+     */
+    public static MappedBloomFilter<CharSequence> open(Path path) {
+        return open(path, s -> s.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 判断数据是否可能存在
+     *
+     * @return true：可能存在（有误判）；false：一定不存在
+     */
+    public boolean mightContain(T object) {
+        long[] hash = MurmurHash3.hash128(funnel.apply(object), seed);
+        long combined = hash[0];
+        for (int i = 0; i < hashNum; i++) {
+            long index = (combined & Long.MAX_VALUE) % bitSize;
+            if ((words.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+            combined += hash[1];
+        }
+        return true;
+    }
+
+    /**
+     * 按照位数组中1的比例计算的误判率：(bitCount / m) ^ k
+     */
+    public double expectedFpp() {
+        return Math.pow((double) bitCount / bitSize, hashNum);
+    }
+
+    public long getBitSize() {
+        return bitSize;
+    }
+
+    public int getHashNum() {
+        return hashNum;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public long getInsertNum() {
+        return insertNum;
+    }
+
+    /**
+     * 关闭文件，映射的内存在被回收之后释放
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * 先写入同目录下的临时文件，再原子替换目标文件，正在映射旧文件的进程不受影响
+     */
+    static void write(BloomFilter<?> filter, Path path) throws IOException {
+        Path absolutePath = path.toAbsolutePath();
+        Path tempPath = Files.createTempFile(absolutePath.getParent(), absolutePath.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(tempPath, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(MAGIC);
+                buffer.putInt(VERSION);
+                buffer.putLong(filter.getBitSize());
+                buffer.putInt(filter.getHashNum());
+                buffer.putInt(0);
+                buffer.putLong(filter.getSeed());
+                buffer.putLong(filter.getInsertNum());
+                buffer.putLong(filter.getBitCount());
+                for (long word : filter.getBits()) {
+                    if (!buffer.hasRemaining()) {
+                        writeFully(out, buffer);
+                    }
+                    buffer.putLong(word);
+                }
+                writeFully(out, buffer);
+                out.force(true);
+            }
+            Files.move(tempPath, absolutePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * 映射整个文件并校验文件头
+     */
+    private static MappedByteBuffer map(Path path, FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+        if (fileSize < HEADER_SIZE) {
+            throw new IllegalStateException("文件格式不正确：" + path);
+        }
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IllegalStateException("文件超过2GB，不支持映射：" + path);
+        }
+        MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, fileSize);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IllegalStateException("文件格式不正确：" + path);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IllegalStateException("文件版本不支持：" + buffer.getInt(4));
+        }
+        long bitSize = buffer.getLong(8);
+        if (bitSize <= 0 || (bitSize & 63) != 0 || HEADER_SIZE + (bitSize >>> 3) != fileSize) {
+            throw new IllegalStateException("文件大小与位数组的大小不一致：" + path);
+        }
+        // 与BloomFilter的上限相同
+        int hashNum = buffer.getInt(16);
+        if (hashNum < 1 || hashNum > 255) {
+            throw new IllegalStateException("哈希函数的个数不正确：" + hashNum);
+        }
+        return buffer;
+    }
+
+    private static void closeOnFailure(FileChannel channel, Exception cause) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.simon.ocean;
+
+/**
+ * MurmurHash3的x64_128版本，非加密哈希，速度快、分布均匀，用于布隆过滤器等需要大量哈希计算的场景
+ * <p>
+ * 结果与Guava的{@code Hashing.murmur3_128(seed)}一致（按小端读取）
+ *
+ * @author shizi
+ * @since 2026-10-18 14:02:10
+ */
+public final class MurmurHash3 {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private MurmurHash3() {}
+
+    /**
+     * 计算128位的哈希
+     *
+     * @return 长度为2的数组：[h1, h2]
+     */
+    public static long[] hash128(byte[] data, long seed) {
+        return hash128(data, 0, data.length, seed);
+    }
+
+    /**
+     * 计算128位的哈希
+     *
+     * @return 长度为2的数组：[h1, h2]
+     */
+    public static long[] hash128(byte[] data, int offset, int length, long seed) {
+        long h1 = seed;
+        long h2 = seed;
+        int blocks = length >>> 4;
+        for (int i = 0; i < blocks; i++) {
+            int pos = offset + (i << 4);
+            long k1 = getLong(data, pos);
+            long k2 = getLong(data, pos + 8);
+
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        // 尾部不足16个字节的数据
+        long k1 = 0;
+        long k2 = 0;
+        int tail = offset + (blocks << 4);
+        switch (length & 15) {
+            case 15:
+                k2 ^= (long) (data[tail + 14] & 0xFF) << 48;
+            case 14:
+                k2 ^= (long) (data[tail + 13] & 0xFF) << 40;
+            case 13:
+                k2 ^= (long) (data[tail + 12] & 0xFF) << 32;
+            case 12:
+                k2 ^= (long) (data[tail + 11] & 0xFF) << 24;
+            case 11:
+                k2 ^= (long) (data[tail + 10] & 0xFF) << 16;
+            case 10:
+                k2 ^= (long) (data[tail + 9] & 0xFF) << 8;
+            case 9:
+                k2 ^= data[tail + 8] & 0xFF;
+                h2 ^= mixK2(k2);
+            case 8:
+                k1 ^= (long) (data[tail + 7] & 0xFF) << 56;
+            case 7:
+                k1 ^= (long) (data[tail + 6] & 0xFF) << 48;
+            case 6:
+                k1 ^= (long) (data[tail + 5] & 0xFF) << 40;
+            case 5:
+                k1 ^= (long) (data[tail + 4] & 0xFF) << 32;
+            case 4:
+                k1 ^= (long) (data[tail + 3] & 0xFF) << 24;
+            case 3:
+                k1 ^= (long) (data[tail + 2] & 0xFF) << 16;
+            case 2:
+                k1 ^= (long) (data[tail + 1] & 0xFF) << 8;
+            case 1:
+                k1 ^= data[tail] & 0xFF;
+                h1 ^= mixK1(k1);
+            default:
+        }
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+        return new long[]{h1, h2};
+    }
+
+    /**
+     * 对long做一次64位的混淆，适用于数据本身就是long的场景，不需要转换为字节
+     */
+    public static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+
+    static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+
+    /**
+     * 流式计算128位的哈希，数据可以分多次写入，结果与将所有数据拼接为字节之后调用{@link #hash128(byte[], long)}相同（数值按小端写入）
+     * <p>
+     * 同一个对象可以通过{@link #reset(long)}重复使用，计算过程中不分配内存；该类非线程安全
+     */
+    public static final class Hasher {
+
+        private long h1;
+        private long h2;
+        /**
+         * 未满16个字节的缓冲数据
+         */
+        private long k1;
+        private long k2;
+        private int bufferSize;
+        private int length;
+
+        public Hasher() {
+            reset(0);
+        }
+
+        public Hasher reset(long seed) {
+            h1 = seed;
+            h2 = seed;
+            k1 = 0;
+            k2 = 0;
+            bufferSize = 0;
+            length = 0;
+            return this;
+        }
+
+        public Hasher putByte(byte b) {
+            long value = b & 0xFFL;
+            if (bufferSize < 8) {
+                k1 |= value << (bufferSize << 3);
+            } else {
+                k2 |= value << ((bufferSize - 8) << 3);
+            }
+            length++;
+            if (++bufferSize == 16) {
+                mixBlock();
+            }
+            return this;
+        }
+
+        public Hasher putBytes(byte[] bytes) {
+            for (byte b : bytes) {
+                putByte(b);
+            }
+            return this;
+        }
+
+        public Hasher putLong(long value) {
+            // 缓冲区按照8个字节对齐的时候直接放入
+            if (bufferSize == 0) {
+                k1 = value;
+            } else if (bufferSize == 8) {
+                k2 = value;
+            } else {
+                for (int i = 0; i < 8; i++) {
+                    putByte((byte) (value >>> (i << 3)));
+                }
+                return this;
+            }
+            length += 8;
+            bufferSize += 8;
+            if (bufferSize == 16) {
+                mixBlock();
+            }
+            return this;
+        }
+
+        public Hasher putInt(int value) {
+            for (int i = 0; i < 4; i++) {
+                putByte((byte) (value >>> (i << 3)));
+            }
+            return this;
+        }
+
+        public Hasher putChar(char value) {
+            putByte((byte) value);
+            putByte((byte) (value >>> 8));
+            return this;
+        }
+
+        /**
+         * 写入字符串的所有字符（每个字符按照小端的两个字节）
+         */
+        public Hasher putChars(CharSequence chars) {
+            for (int i = 0; i < chars.length(); i++) {
+                putChar(chars.charAt(i));
+            }
+            return this;
+        }
+
+        /**
+         * 结束计算，之后通过{@link #getH1()}和{@link #getH2()}获取结果
+         */
+        public Hasher finish() {
+            if (bufferSize > 8) {
+                h2 ^= mixK2(k2);
+            }
+            if (bufferSize > 0) {
+                h1 ^= mixK1(k1);
+            }
+            h1 ^= length;
+            h2 ^= length;
+            h1 += h2;
+            h2 += h1;
+            h1 = fmix64(h1);
+            h2 = fmix64(h2);
+            h1 += h2;
+            h2 += h1;
+            k1 = 0;
+            k2 = 0;
+            bufferSize = 0;
+            return this;
+        }
+
+        public long getH1() {
+            return h1;
+        }
+
+        public long getH2() {
+            return h2;
+        }
+
+        private void mixBlock() {
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+            k1 = 0;
+            k2 = 0;
+            bufferSize = 0;
+        }
+    }
+
+    private static long getLong(byte[] data, int pos) {
+        return (data[pos] & 0xFFL)
+            | (data[pos + 1] & 0xFFL) << 8
+            | (data[pos + 2] & 0xFFL) << 16
+            | (data[pos + 3] & 0xFFL) << 24
+            | (data[pos + 4] & 0xFFL) << 32
+            | (data[pos + 5] & 0xFFL) << 40
+            | (data[pos + 6] & 0xFFL) << 48
+            | (data[pos + 7] & 0xFFL) << 56;
+    }
+}
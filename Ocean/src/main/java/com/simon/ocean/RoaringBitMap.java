@@ -0,0 +1,505 @@
+package com.simon.ocean;
+
+import java.util.Arrays;
+
+/**
+ * 压缩版的BitMap，参考Roaring Bitmap的容器思路，适用于数据稀疏的场景
+ * <p>
+ * {@link BitMap}会一次性分配完整的int数组（默认512MB），而数据稀疏的时候绝大部分都是空的。这里将32位的数据按照高16位拆分成
+ * 一个个64K大小的块，每个块按照自己的数据分布选择不同的容器：
+ * <ul>
+ *     <li>数组容器：数据个数不超过4096个的时候，用有序的char数组存储低16位</li>
+ *     <li>位图容器：数据个数超过4096个的时候，用1024个long（固定8KB）存储</li>
+ *     <li>行程容器：数据大段连续的时候，用[起始值, 长度]的方式存储，调用{@link #runOptimize()}后自动选择</li>
+ * </ul>
+ * 功能跟{@link BitMap}保持一致：
+ *  1.添加数据
+ *  2.清理数据
+ *  3.判断存在否
+ *  4.插入的数据的个数
+ *  5.内存占用的统计
+ * 注意：数据按照无符号的32位处理，因此负数也是可以存储的；该类非线程安全
+ *
+ * @author shizi
+ * @since 2026-10-18 10:12:31
+ */
+public class RoaringBitMap {
+
+    /**
+     * 数组容器的最大数据个数，超过之后转换为位图容器：4096 * 2byte = 8KB，与位图容器的大小相同
+     */
+    private static final int ARRAY_MAX_SIZE = 4096;
+    /**
+     * 位图容器中long的个数：65536 / 64
+     */
+    private static final int BITMAP_WORD_SIZE = 1024;
+    /**
+     * 对象头的粗略估算，用于内存统计
+     */
+    private static final int OBJECT_HEADER = 16;
+    /**
+     * 高16位的key，有序
+     */
+    private char[] keys = new char[4];
+    /**
+     * 与key对应的容器
+     */
+    private Container[] containers = new Container[4];
+    /**
+     * 容器个数
+     */
+    private int size;
+    /**
+     * 数据的个数
+     */
+    private long cardinality;
+
+    /**
+     * 保存数据
+     */
+    public void insert(int data) {
+        char high = highBits(data);
+        int index = indexOf(high);
+        if (index >= 0) {
+            Container container = containers[index];
+            int before = container.cardinality();
+            containers[index] = container.add(lowBits(data));
+            cardinality += containers[index].cardinality() - before;
+        } else {
+            insertContainer(-index - 1, high, new ArrayContainer().add(lowBits(data)));
+            cardinality++;
+        }
+    }
+
+    /**
+     * 判断是否包含对应的数据
+     * @return 包含返回true，否则false
+     */
+    public boolean contain(int data) {
+        int index = indexOf(highBits(data));
+        return index >= 0 && containers[index].contains(lowBits(data));
+    }
+
+    /**
+     * 清理数据
+     */
+    public void delete(int data) {
+        int index = indexOf(highBits(data));
+        if (index < 0) {
+            return;
+        }
+        Container container = containers[index];
+        int before = container.cardinality();
+        container = container.remove(lowBits(data));
+        cardinality -= before - container.cardinality();
+        if (container.cardinality() == 0) {
+            removeContainer(index);
+        } else {
+            containers[index] = container;
+        }
+    }
+
+    /**
+     * 返回bitmap中元素的个数
+     *
+     * @return bitmap中元素的个数
+     */
+    public long count() {
+        return cardinality;
+    }
+
+    /**
+     * 将每个容器转换为占用内存最小的那种，数据大段连续时会转换为行程容器
+     */
+    public void runOptimize() {
+        for (int i = 0; i < size; i++) {
+            containers[i] = containers[i].optimize();
+        }
+    }
+
+    /**
+     * 清理所有的数据
+     */
+    public void clear() {
+        keys = new char[4];
+        containers = new Container[4];
+        size = 0;
+        cardinality = 0;
+    }
+
+    /**
+     * 当前占用的内存大小（估算值）
+     *
+     * @return 字节数
+     */
+    public long memoryUsage() {
+        long bytes = OBJECT_HEADER * 3 + keys.length * 2L + containers.length * 4L;
+        for (int i = 0; i < size; i++) {
+            bytes += containers[i].memoryUsage();
+        }
+        return bytes;
+    }
+
+    private static char highBits(int data) {
+        return (char) (data >>> 16);
+    }
+
+    private static char lowBits(int data) {
+        return (char) data;
+    }
+
+    private int indexOf(char high) {
+        // 大部分场景都是顺序写入，先判断最后一个
+        if (size > 0 && keys[size - 1] == high) {
+            return size - 1;
+        }
+        return Arrays.binarySearch(keys, 0, size, high);
+    }
+
+    private void insertContainer(int index, char high, Container container) {
+        if (size == keys.length) {
+            int newLength = Math.min(size << 1, 1 << 16);
+            keys = Arrays.copyOf(keys, newLength);
+            containers = Arrays.copyOf(containers, newLength);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = high;
+        containers[index] = container;
+        size++;
+    }
+
+    private void removeContainer(int index) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+        containers[--size] = null;
+    }
+
+    /**
+     * 64K数据块的容器，修改操作可能会返回转换之后的新容器
+     */
+    private abstract static class Container {
+
+        abstract Container add(char value);
+
+        abstract boolean contains(char value);
+
+        abstract Container remove(char value);
+
+        abstract int cardinality();
+
+        abstract long memoryUsage();
+
+        /**
+         * 返回有序的全部数据
+         */
+        abstract char[] values();
+
+        /**
+         * 转换为占用内存最小的容器
+         */
+        Container optimize() {
+            char[] values = values();
+            int runs = RunContainer.countRuns(values);
+            long arrayBytes = values.length * 2L;
+            long bitmapBytes = BITMAP_WORD_SIZE * 8L;
+            long runBytes = runs * 4L;
+            if (runBytes < arrayBytes && runBytes < bitmapBytes) {
+                return this instanceof RunContainer ? this : RunContainer.of(values, runs);
+            }
+            if (values.length <= ARRAY_MAX_SIZE) {
+                return this instanceof ArrayContainer ? this : ArrayContainer.of(values);
+            }
+            return this instanceof BitmapContainer ? this : BitmapContainer.of(values);
+        }
+    }
+
+    /**
+     * 数组容器，有序存储低16位
+     */
+    private static final class ArrayContainer extends Container {
+
+        private char[] content = new char[4];
+        private int cardinality;
+
+        static ArrayContainer of(char[] values) {
+            ArrayContainer container = new ArrayContainer();
+            container.content = values;
+            container.cardinality = values.length;
+            return container;
+        }
+
+        @Override
+        Container add(char value) {
+            int index = Arrays.binarySearch(content, 0, cardinality, value);
+            if (index >= 0) {
+                return this;
+            }
+            if (cardinality >= ARRAY_MAX_SIZE) {
+                return BitmapContainer.of(values()).add(value);
+            }
+            index = -index - 1;
+            if (cardinality == content.length) {
+                content = Arrays.copyOf(content, Math.max(4, Math.min(cardinality << 1, ARRAY_MAX_SIZE)));
+            }
+            System.arraycopy(content, index, content, index + 1, cardinality - index);
+            content[index] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(content, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        Container remove(char value) {
+            int index = Arrays.binarySearch(content, 0, cardinality, value);
+            if (index >= 0) {
+                System.arraycopy(content, index + 1, content, index, cardinality - index - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        long memoryUsage() {
+            return OBJECT_HEADER * 2 + content.length * 2L;
+        }
+
+        @Override
+        char[] values() {
+            return Arrays.copyOf(content, cardinality);
+        }
+    }
+
+    /**
+     * 位图容器，固定1024个long
+     */
+    private static final class BitmapContainer extends Container {
+
+        private final long[] words = new long[BITMAP_WORD_SIZE];
+        private int cardinality;
+
+        static BitmapContainer of(char[] values) {
+            BitmapContainer container = new BitmapContainer();
+            for (char value : values) {
+                container.words[value >>> 6] |= 1L << value;
+            }
+            container.cardinality = values.length;
+            return container;
+        }
+
+        @Override
+        Container add(char value) {
+            long before = words[value >>> 6];
+            long after = before | (1L << value);
+            if (before != after) {
+                words[value >>> 6] = after;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        Container remove(char value) {
+            long before = words[value >>> 6];
+            long after = before & ~(1L << value);
+            if (before != after) {
+                words[value >>> 6] = after;
+                cardinality--;
+                if (cardinality <= ARRAY_MAX_SIZE) {
+                    return ArrayContainer.of(values());
+                }
+            }
+            return this;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        long memoryUsage() {
+            return OBJECT_HEADER * 2 + BITMAP_WORD_SIZE * 8L;
+        }
+
+        @Override
+        char[] values() {
+            char[] values = new char[cardinality];
+            int pos = 0;
+            for (int i = 0; i < BITMAP_WORD_SIZE; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[pos++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return values;
+        }
+    }
+
+    /**
+     * 行程容器，每个行程用两个char存储：[起始值, 长度]，表示[start, start + length]这个范围
+     */
+    private static final class RunContainer extends Container {
+
+        private char[] runs;
+        private int runSize;
+        private int cardinality;
+
+        static int countRuns(char[] values) {
+            int runs = 0;
+            for (int i = 0; i < values.length; i++) {
+                if (i == 0 || values[i] != values[i - 1] + 1) {
+                    runs++;
+                }
+            }
+            return runs;
+        }
+
+        static RunContainer of(char[] values, int runCount) {
+            RunContainer container = new RunContainer();
+            container.runs = new char[Math.max(runCount, 1) * 2];
+            int start = 0;
+            for (int i = 1; i <= values.length; i++) {
+                if (i == values.length || values[i] != values[i - 1] + 1) {
+                    container.runs[container.runSize * 2] = values[start];
+                    container.runs[container.runSize * 2 + 1] = (char) (values[i - 1] - values[start]);
+                    container.runSize++;
+                    start = i;
+                }
+            }
+            container.cardinality = values.length;
+            return container;
+        }
+
+        private int start(int index) {
+            return runs[index * 2];
+        }
+
+        private int end(int index) {
+            return runs[index * 2] + runs[index * 2 + 1];
+        }
+
+        /**
+         * 返回起始值不大于value的最后一个行程，没有则返回-1
+         */
+        private int floorRun(char value) {
+            int low = 0;
+            int high = runSize - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (start(middle) <= value) {
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return high;
+        }
+
+        private void setRun(int index, int start, int end) {
+            runs[index * 2] = (char) start;
+            runs[index * 2 + 1] = (char) (end - start);
+        }
+
+        private void insertRun(int index, int start, int end) {
+            if (runSize * 2 == runs.length) {
+                runs = Arrays.copyOf(runs, runs.length * 2);
+            }
+            System.arraycopy(runs, index * 2, runs, index * 2 + 2, (runSize - index) * 2);
+            runSize++;
+            setRun(index, start, end);
+        }
+
+        private void removeRun(int index) {
+            System.arraycopy(runs, index * 2 + 2, runs, index * 2, (runSize - index - 1) * 2);
+            runSize--;
+        }
+
+        @Override
+        Container add(char value) {
+            int index = floorRun(value);
+            if (index >= 0 && value <= end(index)) {
+                return this;
+            }
+            boolean joinPrev = index >= 0 && end(index) + 1 == value;
+            boolean joinNext = index + 1 < runSize && start(index + 1) == value + 1;
+            if (joinPrev && joinNext) {
+                setRun(index, start(index), end(index + 1));
+                removeRun(index + 1);
+            } else if (joinPrev) {
+                setRun(index, start(index), value);
+            } else if (joinNext) {
+                setRun(index + 1, value, end(index + 1));
+            } else {
+                insertRun(index + 1, value, value);
+            }
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            int index = floorRun(value);
+            return index >= 0 && value <= end(index);
+        }
+
+        @Override
+        Container remove(char value) {
+            int index = floorRun(value);
+            if (index < 0 || value > end(index)) {
+                return this;
+            }
+            int start = start(index);
+            int end = end(index);
+            if (start == end) {
+                removeRun(index);
+            } else if (value == start) {
+                setRun(index, start + 1, end);
+            } else if (value == end) {
+                setRun(index, start, end - 1);
+            } else {
+                setRun(index, start, value - 1);
+                insertRun(index + 1, value + 1, end);
+            }
+            cardinality--;
+            return this;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        long memoryUsage() {
+            return OBJECT_HEADER * 2 + runs.length * 2L;
+        }
+
+        @Override
+        char[] values() {
+            char[] values = new char[cardinality];
+            int pos = 0;
+            for (int i = 0; i < runSize; i++) {
+                for (int value = start(i); value <= end(i); value++) {
+                    values[pos++] = (char) value;
+                }
+            }
+            return values;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.simon.ocean;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 可扩展的布隆过滤器，不需要提前知道数据的总量
+ * <p>
+ * 内部由多个{@link BloomFilter}组成一条链，当前的子过滤器写满（达到预计的数据个数）之后，新建一个容量更大、误判率更低的子过滤器：
+ * 第i个子过滤器的容量为 n0 * growth^i，误判率为 p * m * (1 - r) * r^i，各个子过滤器的误判率之和为 p * m；
+ * 余量m留给位数和哈希个数取整带来的误差，这样按照实际的填充计算的总误判率 1 - Π(1 - p_i)（见{@link #expectedFpp}）不超过p
+ * <p>
+ * 功能：
+ *  1.添加数据
+ *  2.判断可能存在否
+ *  3.当前的误判率
+ * 注意：该类非线程安全
+ *
+ * @author shizi
+ * @since 2026-10-18 15:31:09
+ */
+public class ScalableBloomFilter<T> {
+
+    /**
+     * 子过滤器容量的增长倍数
+     */
+    private static final int GROWTH = 2;
+    /**
+     * 子过滤器误判率的收紧比例
+     */
+    private static final double TIGHTENING_RATIO = 0.8;
+    /**
+     * 误判率的余量：子过滤器的位数和哈希个数取整之后，实际的误判率会略高于分配的误判率
+     */
+    private static final double FPP_MARGIN = 0.9;
+    /**
+     * 子过滤器链
+     */
+    private final List<BloomFilter<T>> filterList = new ArrayList<>();
+    /**
+     * 与子过滤器对应的容量
+     */
+    private final List<Long> capacityList = new ArrayList<>();
+    private final long initialCapacity;
+    private final double fpp;
+    private final Function<? super T, byte[]> funnel;
+
+    /**
+     * @param initialCapacity 第一个子过滤器的容量
+     * @param fpp 总的期望误判率
+     * @param funnel 对象转换为字节的函数
+     */
+    public ScalableBloomFilter(long initialCapacity, double fpp, Function<? super T, byte[]> funnel) {
+        this.initialCapacity = initialCapacity;
+        this.fpp = fpp;
+        this.funnel = funnel;
+        addFilter();
+    }
+
+    /**
+     * 字符串的布隆过滤器，按照UTF-8转换为字节
+     */
+    public static ScalableBloomFilter<CharSequence> create(long initialCapacity, double fpp) {
+        return new ScalableBloomFilter<>(initialCapacity, fpp, s -> s.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 添加数据，已经存在（包括误判）的数据不重复添加
+     *
+     * @return true：数据之前一定不存在，本次已经添加；false：数据可能已经存在
+     */
+    public boolean put(T object) {
+        if (mightContain(object)) {
+            return false;
+        }
+        int last = filterList.size() - 1;
+        BloomFilter<T> current = filterList.get(last);
+        current.put(object);
+        if (current.getInsertNum() >= capacityList.get(last)) {
+            addFilter();
+        }
+        return true;
+    }
+
+    /**
+     * 判断数据是否可能存在，新数据大部分在最后的子过滤器中，从后往前判断
+     *
+     * @return true：可能存在（有误判）；false：一定不存在
+     */
+    public boolean mightContain(T object) {
+        for (int i = filterList.size() - 1; i >= 0; i--) {
+            if (filterList.get(i).mightContain(object)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 总的误判率：1 - Π(1 - p_i)
+     */
+    public double expectedFpp() {
+        double notFalse = 1;
+        for (BloomFilter<T> filter : filterList) {
+            notFalse *= 1 - filter.expectedFpp();
+        }
+        return 1 - notFalse;
+    }
+
+    /**
+     * 子过滤器的个数
+     */
+    public int getFilterNum() {
+        return filterList.size();
+    }
+
+    /**
+     * 所有子过滤器的位数组大小的总和
+     */
+    public long getBitSize() {
+        long bitSize = 0;
+        for (BloomFilter<T> filter : filterList) {
+            bitSize += filter.getBitSize();
+        }
+        return bitSize;
+    }
+
+    private void addFilter() {
+        int i = filterList.size();
+        long capacity = initialCapacity * (long) Math.pow(GROWTH, i);
+        double subFpp = fpp * FPP_MARGIN * (1 - TIGHTENING_RATIO) * Math.pow(TIGHTENING_RATIO, i);
+        filterList.add(new BloomFilter<>(capacity, subFpp, funnel));
+        capacityList.add(capacity);
+    }
+}
@@ -0,0 +1,770 @@
+package com.simon.ocean;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 幂等数据的分段存储，替代单个的ConcurrentSkipListMap
+ * <p>
+ * key是128位的哈希（hi和lo两个long），已经是均匀分布的，不需要再扰动：hi的高位选择段，lo的低位作为段内的槽位。
+ * 每个段一把锁，段内是开放寻址（线性探测）的哈希表，每个槽位固定24个字节：hi、lo、过期时间，
+ * 查找和插入都是O(1)，没有对象的分配；删除时将后面的数据往前移（backward shift），不需要墓碑标记。
+ * 最大的数据个数平均分到每个段，每个段只和自己的个数比较，热点路径上没有跨段共享的计数器；
+ * 因此最大的数据个数是近似的：数据在段之间不均匀的时候，总数没有达到最大值也可能有段已满，最大值很小的时候每个段至少1个，总数可以超过最大值
+ * <p>
+ * 槽位有两种存放方式：
+ *  1.堆内：long数组，段内的数据超过负载之后单独扩容，不影响其他段
+ *  2.堆外：直接内存，按照最大的数据个数一次分配好，不再扩容，几千万的数据对GC也没有影响；段内的数据超过上限之后拒绝插入
+ * <p>
+ * 数据满了之后可以按照{@link IdempotencyEvictionPolicy}淘汰段内的数据，LRU的访问标记存放在过期时间的最高位；
+ * TinyLFU在段内另外有一个很小的准入窗口，新数据先进入窗口，离开窗口的时候再和CLOCK选出的数据按照频率竞争
+ * <p>
+ * 注意：过期时间为0表示空槽位，因此过期时间需要大于0
+ *
+ * @author shizi
+ * @since 2026-10-18 18:06:44
+ */
+final class ShardedIdempotencyStore {
+
+    /**
+     * 段的个数的位数：64个段
+     */
+    private static final int SEGMENT_BITS = 6;
+    /**
+     * 每个段的初始槽位数
+     */
+    private static final int INITIAL_CAPACITY = 64;
+    /**
+     * 负载因子，线性探测在负载较低时探测次数更少
+     */
+    private static final float LOAD_FACTOR = 0.5f;
+    /**
+     * 堆外的槽位数不再扩容，段内数据不均匀的时候允许的最大负载
+     */
+    private static final float MAX_LOAD_FACTOR = 0.875f;
+    /**
+     * 每个槽位的字节数：hi、lo、过期时间
+     */
+    static final int SLOT_BYTES = 24;
+    /**
+     * 访问标记，存放在过期时间的最高位
+     */
+    private static final long REFERENCED = Long.MIN_VALUE;
+    /**
+     * FIFO淘汰时的采样个数
+     */
+    private static final int SAMPLE_SIZE = 8;
+    /**
+     * TinyLFU的准入窗口占段内上限的比例：1%，至少1个
+     */
+    private static final int WINDOW_RATIO = 100;
+    /**
+     * checkAndMark的结果：数据存在并且没有过期
+     */
+    static final int PRESENT = 1;
+    /**
+     * checkAndMark的结果：数据不存在或者已经过期，已经标记
+     */
+    static final int MARKED = 0;
+    /**
+     * checkAndMark的结果：数据不存在或者已经过期，数据已满，没有标记
+     */
+    static final int FULL = -1;
+    private final Segment[] segments;
+    private volatile boolean offHeap;
+    private volatile int maxDataSize;
+    private volatile IdempotencyEvictionPolicy evictionPolicy = IdempotencyEvictionPolicy.LRU;
+
+    ShardedIdempotencyStore(int maxDataSize) {
+        this.maxDataSize = maxDataSize;
+        segments = new Segment[1 << SEGMENT_BITS];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+        resetLimits();
+    }
+
+    /**
+     * 切换存放方式，已有的数据会迁移到新的槽位中
+     *
+     * @param offHeap true：堆外；false：堆内
+     */
+    void setOffHeap(boolean offHeap) {
+        this.offHeap = offHeap;
+        rebuildSegments();
+    }
+
+    boolean isOffHeap() {
+        return offHeap;
+    }
+
+    /**
+     * 最大的数据个数，堆外按照这个个数重新分配内存，TinyLFU的频率统计也按照这个个数重新分配
+     */
+    void setMaxDataSize(int maxDataSize) {
+        this.maxDataSize = maxDataSize;
+        resetLimits();
+        if (offHeap) {
+            rebuildSegments();
+        }
+        if (evictionPolicy == IdempotencyEvictionPolicy.TINY_LFU) {
+            resetSketches();
+        }
+    }
+
+    void setEvictionPolicy(IdempotencyEvictionPolicy evictionPolicy) {
+        this.evictionPolicy = evictionPolicy;
+        resetSketches();
+    }
+
+    /**
+     * 获取数据的过期时间，同时记录访问
+     *
+     * @return 过期时间，不存在返回0
+     */
+    long get(long hi, long lo) {
+        Segment segment = segmentFor(hi);
+        segment.lock();
+        try {
+            return segment.get(hi, lo);
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    /**
+     * 判断并标记：一次查找完成判断数据是否存在，不存在（或者已经过期）的时候直接写入新的过期时间
+     *
+     * @param now 当前时间
+     * @param expireTime 新的过期时间
+     * @return {@link #PRESENT}、{@link #MARKED}或者{@link #FULL}
+     */
+    int checkAndMark(long hi, long lo, long now, long expireTime) {
+        Segment segment = segmentFor(hi);
+        segment.lock();
+        try {
+            return segment.checkAndMark(hi, lo, now, expireTime);
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    /**
+     * 添加数据，已经存在则覆盖过期时间
+     *
+     * @return true：添加成功；false：段内的数据已满，没有添加
+     */
+    boolean put(long hi, long lo, long expireTime) {
+        Segment segment = segmentFor(hi);
+        segment.lock();
+        try {
+            return segment.put(hi, lo, expireTime);
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    /**
+     * 添加数据，段内的数据已满的时候按照淘汰策略先淘汰同一个段内的一个数据；没有满或者段内没有数据的时候直接添加
+     */
+    void putOrEvict(long hi, long lo, long expireTime) {
+        Segment segment = segmentFor(hi);
+        segment.lock();
+        try {
+            segment.putOrEvict(hi, lo, expireTime);
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    /**
+     * 删除数据
+     *
+     * @return true：数据存在并且已经删除
+     */
+    boolean remove(long hi, long lo) {
+        Segment segment = segmentFor(hi);
+        segment.lock();
+        try {
+            return segment.remove(hi, lo);
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    /**
+     * 数据过期的时候删除，过期时间被刷新过的数据不删除
+     *
+     * @param now 当前时间
+     * @return true：数据已经过期并且已经删除
+     */
+    boolean removeIfExpired(long hi, long lo, long now) {
+        Segment segment = segmentFor(hi);
+        segment.lock();
+        try {
+            return segment.removeIfExpired(hi, lo, now);
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    /**
+     * 数据的个数
+     */
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            segment.lock();
+            try {
+                size += segment.size;
+            } finally {
+                segment.unlock();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 槽位占用的内存的字节数
+     */
+    long memoryUsage() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += (long) (segment.mask + 1) * SLOT_BYTES;
+        }
+        return bytes;
+    }
+
+    /**
+     * 遍历所有的数据，每个段在锁内复制出来之后再回调，回调中的耗时操作（比如写文件）不会阻塞段的读写
+     */
+    void forEach(EntryVisitor visitor) {
+        for (Segment segment : segments) {
+            long[] entries;
+            int length;
+            segment.lock();
+            try {
+                entries = new long[segment.size * 3];
+                length = segment.copyTo(entries);
+            } finally {
+                segment.unlock();
+            }
+            for (int base = 0; base < length; base += 3) {
+                visitor.visit(entries[base], entries[base + 1], entries[base + 2]);
+            }
+        }
+    }
+
+    void clear() {
+        for (Segment segment : segments) {
+            segment.lock();
+            try {
+                segment.clear();
+            } finally {
+                segment.unlock();
+            }
+        }
+    }
+
+    private Segment segmentFor(long hi) {
+        return segments[(int) (hi >>> (64 - SEGMENT_BITS))];
+    }
+
+    private int segmentDataSize() {
+        return (maxDataSize + segments.length - 1) / segments.length;
+    }
+
+    private void rebuildSegments() {
+        int capacity = INITIAL_CAPACITY;
+        if (offHeap) {
+            capacity = Math.max(INITIAL_CAPACITY, tableSizeFor((int) Math.ceil(segmentDataSize() / LOAD_FACTOR)));
+        }
+        for (Segment segment : segments) {
+            segment.lock();
+            try {
+                // 已有的数据超过了新的容量，则扩大容量，保证数据都能放下
+                int segmentCapacity = Math.max(capacity,
+                    tableSizeFor((int) (segment.size / (offHeap ? MAX_LOAD_FACTOR : LOAD_FACTOR)) + 1));
+                segment.rebuild(offHeap ? new DirectSlotTable(segmentCapacity) : new HeapSlotTable(segmentCapacity), !offHeap);
+            } finally {
+                segment.unlock();
+            }
+        }
+    }
+
+    /**
+     * 最大的数据个数平均分到每个段，余数分给前面的段；每个段至少1个，否则上限为0的段中的数据一个都放不下
+     */
+    private void resetLimits() {
+        int base = maxDataSize / segments.length;
+        int remainder = maxDataSize % segments.length;
+        for (int i = 0; i < segments.length; i++) {
+            Segment segment = segments[i];
+            segment.lock();
+            try {
+                segment.limit = Math.max(1, base + (i < remainder ? 1 : 0));
+            } finally {
+                segment.unlock();
+            }
+        }
+    }
+
+    private void resetSketches() {
+        boolean tinyLfu = evictionPolicy == IdempotencyEvictionPolicy.TINY_LFU;
+        for (Segment segment : segments) {
+            segment.lock();
+            try {
+                segment.sketch = tinyLfu ? new FrequencySketch(segmentDataSize()) : null;
+            } finally {
+                segment.unlock();
+            }
+        }
+    }
+
+    private static int tableSizeFor(int size) {
+        return size <= 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+    }
+
+    /**
+     * 数据的遍历回调
+     */
+    interface EntryVisitor {
+
+        void visit(long hi, long lo, long expireTime);
+    }
+
+    /**
+     * 槽位的存储，每个槽位：hi、lo、过期时间
+     */
+    private interface SlotTable {
+
+        long hi(int slot);
+
+        long lo(int slot);
+
+        long expireTime(int slot);
+
+        void set(int slot, long hi, long lo, long expireTime);
+
+        void setExpireTime(int slot, long expireTime);
+
+        int capacity();
+
+        /**
+         * 新建一个同样类型的空的存储
+         */
+        SlotTable newTable(int capacity);
+    }
+
+    private static final class HeapSlotTable implements SlotTable {
+
+        private final long[] table;
+
+        private HeapSlotTable(int capacity) {
+            table = new long[capacity * 3];
+        }
+
+        @Override
+        public long hi(int slot) {
+            return table[slot * 3];
+        }
+
+        @Override
+        public long lo(int slot) {
+            return table[slot * 3 + 1];
+        }
+
+        @Override
+        public long expireTime(int slot) {
+            return table[slot * 3 + 2];
+        }
+
+        @Override
+        public void set(int slot, long hi, long lo, long expireTime) {
+            int base = slot * 3;
+            table[base] = hi;
+            table[base + 1] = lo;
+            table[base + 2] = expireTime;
+        }
+
+        @Override
+        public void setExpireTime(int slot, long expireTime) {
+            table[slot * 3 + 2] = expireTime;
+        }
+
+        @Override
+        public int capacity() {
+            return table.length / 3;
+        }
+
+        @Override
+        public SlotTable newTable(int capacity) {
+            return new HeapSlotTable(capacity);
+        }
+    }
+
+    private static final class DirectSlotTable implements SlotTable {
+
+        private final ByteBuffer buffer;
+
+        private DirectSlotTable(int capacity) {
+            buffer = ByteBuffer.allocateDirect(Math.multiplyExact(capacity, SLOT_BYTES)).order(ByteOrder.nativeOrder());
+        }
+
+        @Override
+        public long hi(int slot) {
+            return buffer.getLong(slot * SLOT_BYTES);
+        }
+
+        @Override
+        public long lo(int slot) {
+            return buffer.getLong(slot * SLOT_BYTES + 8);
+        }
+
+        @Override
+        public long expireTime(int slot) {
+            return buffer.getLong(slot * SLOT_BYTES + 16);
+        }
+
+        @Override
+        public void set(int slot, long hi, long lo, long expireTime) {
+            int offset = slot * SLOT_BYTES;
+            buffer.putLong(offset, hi);
+            buffer.putLong(offset + 8, lo);
+            buffer.putLong(offset + 16, expireTime);
+        }
+
+        @Override
+        public void setExpireTime(int slot, long expireTime) {
+            buffer.putLong(slot * SLOT_BYTES + 16, expireTime);
+        }
+
+        @Override
+        public int capacity() {
+            return buffer.capacity() / SLOT_BYTES;
+        }
+
+        @Override
+        public SlotTable newTable(int capacity) {
+            return new DirectSlotTable(capacity);
+        }
+    }
+
+    private final class Segment extends ReentrantLock {
+
+        private SlotTable table = new HeapSlotTable(INITIAL_CAPACITY);
+        private int mask = INITIAL_CAPACITY - 1;
+        /**
+         * 段内数据的个数，只在持有锁的时候修改
+         */
+        private int size;
+        /**
+         * 段内数据的上限，见{@link #resetLimits()}
+         */
+        private int limit;
+        /**
+         * 可以扩容时是扩容的阈值，否则是拒绝插入的阈值
+         */
+        private int threshold = (int) (INITIAL_CAPACITY * LOAD_FACTOR);
+        private boolean resizable = true;
+        /**
+         * CLOCK算法的指针
+         */
+        private int clockHand;
+        /**
+         * TinyLFU的访问频率，其他策略为null
+         */
+        private FrequencySketch sketch;
+        /**
+         * TinyLFU的准入窗口：按照插入的顺序循环存放最近插入的数据的hi、lo，见{@link #evictWithWindow()}
+         */
+        private long[] window;
+        private int windowHead;
+        private int windowCount;
+
+        /**
+         * 查找数据所在的槽位
+         *
+         * @return 数据所在的槽位；不存在则返回应该插入的空槽位的相反数减1
+         */
+        private int find(long hi, long lo) {
+            for (int i = (int) lo & mask; ; i = (i + 1) & mask) {
+                if (table.expireTime(i) == 0) {
+                    return -i - 1;
+                }
+                if (table.hi(i) == hi && table.lo(i) == lo) {
+                    return i;
+                }
+            }
+        }
+
+        private long get(long hi, long lo) {
+            if (null != sketch) {
+                sketch.increment(lo);
+            }
+            int i = find(hi, lo);
+            if (i < 0) {
+                return 0;
+            }
+            long expireTime = table.expireTime(i);
+            if (expireTime > 0) {
+                table.setExpireTime(i, expireTime | REFERENCED);
+            }
+            return expireTime & ~REFERENCED;
+        }
+
+        private int checkAndMark(long hi, long lo, long now, long expireTime) {
+            if (null != sketch) {
+                sketch.increment(lo);
+            }
+            int i = find(hi, lo);
+            if (i >= 0) {
+                long current = table.expireTime(i);
+                if (CoarseClock.isBefore(now, current & ~REFERENCED)) {
+                    // 已经有访问标记的不再写入
+                    if (current > 0) {
+                        table.setExpireTime(i, current | REFERENCED);
+                    }
+                    return PRESENT;
+                }
+                table.setExpireTime(i, expireTime);
+                return MARKED;
+            }
+            if (isFull()) {
+                return FULL;
+            }
+            insertAt(-i - 1, hi, lo, expireTime);
+            return MARKED;
+        }
+
+        private boolean put(long hi, long lo, long expireTime) {
+            int i = find(hi, lo);
+            if (i >= 0) {
+                table.setExpireTime(i, expireTime | REFERENCED);
+                return true;
+            }
+            if (isFull()) {
+                return false;
+            }
+            insertAt(-i - 1, hi, lo, expireTime);
+            return true;
+        }
+
+        private void putOrEvict(long hi, long lo, long expireTime) {
+            int i = find(hi, lo);
+            if (i >= 0) {
+                table.setExpireTime(i, expireTime | REFERENCED);
+                return;
+            }
+            if (size > 0 && isFull()) {
+                if (null != sketch) {
+                    evictWithWindow();
+                } else if (evictionPolicy == IdempotencyEvictionPolicy.FIFO) {
+                    removeAt(sampleEarliestExpire());
+                } else {
+                    removeAt(clockVictim());
+                }
+                i = find(hi, lo);
+            }
+            insertAt(-i - 1, hi, lo, expireTime);
+        }
+
+        /**
+         * W-TinyLFU：最近插入的数据在窗口中，不参与淘汰，保证刚写入的数据马上再来的时候能判断为重复；
+         * 淘汰时最早进入窗口的数据作为候选，和CLOCK选出的数据比较频率，频率高的留下，另一个淘汰
+         */
+        private void evictWithWindow() {
+            while (windowCount > 0) {
+                int windowSize = window.length >> 1;
+                long candidateHi = window[windowHead << 1];
+                long candidateLo = window[(windowHead << 1) + 1];
+                windowHead = (windowHead + 1) % windowSize;
+                windowCount--;
+                int candidate = find(candidateHi, candidateLo);
+                if (candidate < 0) {
+                    // 候选的数据已经过期删除了
+                    continue;
+                }
+                int victim = clockVictim();
+                if (victim != candidate && sketch.frequency(candidateLo) > sketch.frequency(table.lo(victim))) {
+                    removeAt(victim);
+                } else {
+                    removeAt(candidate);
+                }
+                return;
+            }
+            removeAt(clockVictim());
+        }
+
+        /**
+         * 新插入的数据放入窗口，窗口满了之后最早的数据直接离开窗口
+         */
+        private void offerWindow(long hi, long lo) {
+            int windowSize = Math.max(1, limit / WINDOW_RATIO);
+            if (null == window || window.length != windowSize << 1) {
+                window = new long[windowSize << 1];
+                windowHead = 0;
+                windowCount = 0;
+            }
+            if (windowCount == windowSize) {
+                windowHead = (windowHead + 1) % windowSize;
+                windowCount--;
+            }
+            int tail = (windowHead + windowCount) % windowSize;
+            window[tail << 1] = hi;
+            window[(tail << 1) + 1] = lo;
+            windowCount++;
+        }
+
+        /**
+         * 段内的数据达到上限，或者堆外的槽位已满
+         */
+        private boolean isFull() {
+            return size >= limit || (!resizable && size >= threshold);
+        }
+
+        /**
+         * 新数据没有访问标记，再次访问之后才有，一次性的冷数据扫描不会把有访问的数据挤出去
+         */
+        private void insertAt(int slot, long hi, long lo, long expireTime) {
+            table.set(slot, hi, lo, expireTime);
+            size++;
+            if (null != sketch) {
+                offerWindow(hi, lo);
+            }
+            if (size > threshold && resizable) {
+                rebuild(table.newTable((mask + 1) << 1), true);
+            }
+        }
+
+        /**
+         * CLOCK：有访问标记的清除标记，继续扫描，第一个没有标记的作为淘汰的数据，最多扫描两圈
+         */
+        private int clockVictim() {
+            while (true) {
+                int i = clockHand;
+                clockHand = (clockHand + 1) & mask;
+                long expireTime = table.expireTime(i);
+                if (expireTime == 0) {
+                    continue;
+                }
+                if (expireTime < 0) {
+                    table.setExpireTime(i, expireTime & ~REFERENCED);
+                    continue;
+                }
+                return i;
+            }
+        }
+
+        /**
+         * 随机采样几个数据，返回最早过期的
+         */
+        private int sampleEarliestExpire() {
+            int victim = -1;
+            long earliest = Long.MAX_VALUE;
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int n = 0; n < SAMPLE_SIZE; n++) {
+                int i = random.nextInt(mask + 1);
+                while (table.expireTime(i) == 0) {
+                    i = (i + 1) & mask;
+                }
+                long expireTime = table.expireTime(i) & ~REFERENCED;
+                if (expireTime < earliest) {
+                    earliest = expireTime;
+                    victim = i;
+                }
+            }
+            return victim;
+        }
+
+        private boolean remove(long hi, long lo) {
+            int i = find(hi, lo);
+            if (i < 0) {
+                return false;
+            }
+            removeAt(i);
+            return true;
+        }
+
+        private boolean removeIfExpired(long hi, long lo, long now) {
+            int i = find(hi, lo);
+            if (i < 0 || (table.expireTime(i) & ~REFERENCED) > now) {
+                return false;
+            }
+            removeAt(i);
+            return true;
+        }
+
+        /**
+         * 删除槽位i的数据，并将后面同一探测链上的数据往前移，保证查找时不会被空槽位截断
+         */
+        private void removeAt(int i) {
+            int hole = i;
+            for (int j = (i + 1) & mask; table.expireTime(j) != 0; j = (j + 1) & mask) {
+                int home = (int) table.lo(j) & mask;
+                // home不在(hole, j]之间，说明j可以移到hole
+                if (((j - home) & mask) >= ((j - hole) & mask)) {
+                    table.set(hole, table.hi(j), table.lo(j), table.expireTime(j));
+                    hole = j;
+                }
+            }
+            table.set(hole, 0, 0, 0);
+            size--;
+        }
+
+        /**
+         * 将数据迁移到新的槽位中，新的槽位需要能放下所有的数据
+         */
+        private void rebuild(SlotTable newTable, boolean newResizable) {
+            SlotTable oldTable = table;
+            int oldCapacity = mask + 1;
+            table = newTable;
+            mask = newTable.capacity() - 1;
+            resizable = newResizable;
+            threshold = (int) ((mask + 1) * (resizable ? LOAD_FACTOR : MAX_LOAD_FACTOR));
+            clockHand = 0;
+            for (int i = 0; i < oldCapacity; i++) {
+                long expireTime = oldTable.expireTime(i);
+                if (expireTime != 0) {
+                    long lo = oldTable.lo(i);
+                    int j = (int) lo & mask;
+                    while (table.expireTime(j) != 0) {
+                        j = (j + 1) & mask;
+                    }
+                    table.set(j, oldTable.hi(i), lo, expireTime);
+                }
+            }
+        }
+
+        /**
+         * 复制段内所有的数据（去掉访问标记），每个数据3个long：hi、lo、过期时间
+         *
+         * @return 复制的long的个数
+         */
+        private int copyTo(long[] entries) {
+            int length = 0;
+            for (int i = 0; i <= mask; i++) {
+                long expireTime = table.expireTime(i);
+                if (expireTime != 0) {
+                    entries[length] = table.hi(i);
+                    entries[length + 1] = table.lo(i);
+                    entries[length + 2] = expireTime & ~REFERENCED;
+                    length += 3;
+                }
+            }
+            return length;
+        }
+
+        private void clear() {
+            table = table.newTable(resizable ? INITIAL_CAPACITY : mask + 1);
+            mask = table.capacity() - 1;
+            threshold = (int) ((mask + 1) * (resizable ? LOAD_FACTOR : MAX_LOAD_FACTOR));
+            clockHand = 0;
+            size = 0;
+            windowHead = 0;
+            windowCount = 0;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.simon.ocean;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * 异或过滤器（xor8），用于启动时一次性加载、之后不再变化的集合，比如黑名单
+ * <p>
+ * 每个数据映射到三个块中各一个位置，三个位置上的8位指纹异或起来等于该数据的指纹。构建时通过"剥离"找到每个数据独占的位置，
+ * 再逆序赋值。每个数据占用约 1.23 * 8 = 9.84 位，误判率约为 1/256（0.39%）；同样误判率下布隆过滤器需要约 11.5 位，
+ * 即节省约15%的内存，同时查询固定只访问三个位置。大小的计算见{@link BloomFilterUtil#getXorFilterBitsSize(long)}
+ * <p>
+ * 功能：
+ *  1.通过数据集合构建
+ *  2.判断可能存在否
+ * 注意：构建之后不可修改；该类线程安全
+ *
+ * @author shizi
+ * @since 2026-10-18 16:50:03
+ */
+public final class XorFilter<T> {
+
+    /**
+     * 构建失败的最大重试次数，正常情况下一两次就能成功
+     */
+    private static final int MAX_RETRY = 100;
+    private final byte[] fingerprints;
+    private final int blockLength;
+    private final long seed;
+    private final int size;
+    private final Function<? super T, byte[]> funnel;
+
+    private XorFilter(byte[] fingerprints, int blockLength, long seed, int size, Function<? super T, byte[]> funnel) {
+        this.fingerprints = fingerprints;
+        this.blockLength = blockLength;
+        this.seed = seed;
+        this.size = size;
+        this.funnel = funnel;
+    }
+
+    /**
+     * 字符串的异或过滤器，按照UTF-8转换为字节
+     */
+    public static XorFilter<CharSequence> build(Collection<? extends CharSequence> dataList) {
+        return build(dataList, s -> s.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 通过数据集合构建，重复的数据会被去掉
+     *
+     * @param funnel 对象转换为字节的函数
+     */
+    public static <T> XorFilter<T> build(Collection<? extends T> dataList, Function<? super T, byte[]> funnel) {
+        long[] keys = new long[dataList.size()];
+        int i = 0;
+        for (T data : dataList) {
+            keys[i++] = MurmurHash3.hash128(funnel.apply(data), BloomFilter.DEFAULT_SEED)[0];
+        }
+        return build(keys, funnel);
+    }
+
+    private static <T> XorFilter<T> build(long[] keys, Function<? super T, byte[]> funnel) {
+        keys = distinct(keys);
+        int size = keys.length;
+        int capacity = (int) Math.ceil(BloomFilterUtil.getXorFilterBitsSize(size) / 8.0);
+        int blockLength = capacity / 3;
+        capacity = blockLength * 3;
+
+        long[] reverseOrder = new long[size];
+        byte[] reverseH = new byte[size];
+        long[] t2vals = new long[capacity];
+        int[] t2count = new int[capacity];
+        int[] alone = new int[capacity];
+        Random random = new Random();
+        long seed;
+        int retry = 0;
+        while (true) {
+            if (retry++ > MAX_RETRY) {
+                throw new IllegalStateException("异或过滤器构建失败");
+            }
+            seed = random.nextLong();
+            Arrays.fill(t2vals, 0L);
+            Arrays.fill(t2count, 0);
+            for (long key : keys) {
+                long hash = mix(key, seed);
+                for (int hi = 0; hi < 3; hi++) {
+                    int index = index(hash, hi, blockLength);
+                    t2vals[index] ^= hash;
+                    t2count[index]++;
+                }
+            }
+
+            // 剥离：每次取出只有一个数据的位置，该位置就归这个数据所有
+            int aloneSize = 0;
+            for (int i = 0; i < capacity; i++) {
+                if (t2count[i] == 1) {
+                    alone[aloneSize++] = i;
+                }
+            }
+            int reverseOrderPos = 0;
+            while (aloneSize > 0) {
+                int i = alone[--aloneSize];
+                if (t2count[i] != 1) {
+                    continue;
+                }
+                long hash = t2vals[i];
+                byte found = -1;
+                for (int hi = 0; hi < 3; hi++) {
+                    int index = index(hash, hi, blockLength);
+                    if (index == i) {
+                        found = (byte) hi;
+                    }
+                    t2vals[index] ^= hash;
+                    if (--t2count[index] == 1) {
+                        alone[aloneSize++] = index;
+                    }
+                }
+                reverseOrder[reverseOrderPos] = hash;
+                reverseH[reverseOrderPos] = found;
+                reverseOrderPos++;
+            }
+            if (reverseOrderPos == size) {
+                break;
+            }
+        }
+
+        // 逆序赋值，保证每个数据三个位置的指纹异或等于自己的指纹
+        byte[] fingerprints = new byte[capacity];
+        for (int i = size - 1; i >= 0; i--) {
+            long hash = reverseOrder[i];
+            int change = index(hash, reverseH[i], blockLength);
+            int xor = fingerprint(hash);
+            for (int hi = 0; hi < 3; hi++) {
+                xor ^= fingerprints[index(hash, hi, blockLength)];
+            }
+            fingerprints[change] ^= (byte) xor;
+        }
+        return new XorFilter<>(fingerprints, blockLength, seed, size, funnel);
+    }
+
+    /**
+     * 判断数据是否可能存在
+     *
+     * @return true：可能存在（有误判）；false：一定不存在
+     */
+    public boolean mightContain(T object) {
+        long key = MurmurHash3.hash128(funnel.apply(object), BloomFilter.DEFAULT_SEED)[0];
+        long hash = mix(key, seed);
+        int xor = fingerprint(hash)
+            ^ fingerprints[index(hash, 0, blockLength)]
+            ^ fingerprints[index(hash, 1, blockLength)]
+            ^ fingerprints[index(hash, 2, blockLength)];
+        return (xor & 0xFF) == 0;
+    }
+
+    /**
+     * 数据的个数（去重后）
+     */
+    public int getSize() {
+        return size;
+    }
+
+    public long getBitSize() {
+        return fingerprints.length * 8L;
+    }
+
+    private static long mix(long key, long seed) {
+        return MurmurHash3.fmix64(key + seed);
+    }
+
+    private static int fingerprint(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & 0xFF;
+    }
+
+    /**
+     * 第hi个块中的位置，通过旋转取哈希的不同部分，再用乘法映射到块内
+     */
+    private static int index(long hash, int hi, int blockLength) {
+        long r = Long.rotateLeft(hash, hi * 21) & 0xFFFFFFFFL;
+        return (int) ((r * blockLength) >>> 32) + hi * blockLength;
+    }
+
+    private static long[] distinct(long[] keys) {
+        long[] sorted = keys.clone();
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, size);
+    }
+}
@@ -1,6 +1,11 @@
 package com.simon.ocean;
 
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import lombok.SneakyThrows;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -27,9 +32,9 @@ public class BitMapDemo {
         BitMap b = BitMap.getInstance();
         // 设置最大值
         b.setMaxValue(32);
-        // 超过最大尺寸会报自定义的异常：SizeOutOfBoundsException
-        // b.insert(33);
-        // 重新设置最大值
+        // 超过最大尺寸会自动扩容，负数会报自定义的异常：SizeOutOfBoundsException
+        // b.insert(-1);
+        // 重新设置最大值，已有的数据会保留
         b.setMaxValue(54);
 
         // 插入成功
@@ -40,4 +45,220 @@ public class BitMapDemo {
         Assert.assertEquals(2, b.count());
         Assert.assertTrue(b.contain(4));
     }
+
+    /**
+     * 压缩版的bitmap，稀疏数据下内存占用比较
+     */
+    @Test
+    public void testRoaring() {
+        RoaringBitMap b = new RoaringBitMap();
+        for (int i = 0; i < 300000; i++) {
+            b.insert(i * 7919);
+        }
+        Assert.assertEquals(300000, b.count());
+        Assert.assertTrue(b.contain(7919));
+        Assert.assertFalse(b.contain(7918));
+
+        b.delete(7919);
+        Assert.assertFalse(b.contain(7919));
+        Assert.assertEquals(299999, b.count());
+
+        // 连续的数据转换为行程容器之后内存会更小
+        for (int i = 0; i < 100000; i++) {
+            b.insert(-i - 1);
+        }
+        long before = b.memoryUsage();
+        b.runOptimize();
+        Assert.assertTrue(b.memoryUsage() < before);
+        Assert.assertTrue(b.contain(-1));
+        Assert.assertEquals(399999, b.count());
+        // 数据分布在整个int范围（i * 7919溢出之后为负数），同样范围的稠密位数组需要2^32位
+        long denseBytes = (1L << 32) / Byte.SIZE;
+        Assert.assertTrue(b.memoryUsage() < denseBytes / 100);
+    }
+
+    /**
+     * long类型的数据，页按需分配
+     */
+    @Test
+    public void testLongBitMap() {
+        LongBitMap b = new LongBitMap();
+        long snowflakeId = 1451631547290435584L;
+        b.insert(snowflakeId);
+        b.insert(snowflakeId + 1);
+        b.insert(Long.MAX_VALUE);
+        b.insert(-1L);
+        Assert.assertTrue(b.contain(snowflakeId));
+        Assert.assertTrue(b.contain(Long.MAX_VALUE));
+        Assert.assertTrue(b.contain(-1L));
+        Assert.assertFalse(b.contain(snowflakeId + 2));
+        Assert.assertEquals(4, b.count());
+        // 只分配了用到的3个页
+        Assert.assertEquals(3, b.pageCount());
+
+        b.delete(snowflakeId);
+        Assert.assertFalse(b.contain(snowflakeId));
+        Assert.assertEquals(3, b.count());
+    }
+
+    /**
+     * 多线程并发写入不丢数据
+     */
+    @Test
+    @SneakyThrows
+    public void testConcurrent() {
+        ConcurrentBitMap b = new ConcurrentBitMap(32 * 100000);
+        int threadNum = 32;
+        CountDownLatch latch = new CountDownLatch(threadNum);
+        for (int t = 0; t < threadNum; t++) {
+            int offset = t;
+            new Thread(() -> {
+                // 每个线程写入交错的数据，相邻的数据落在同一个long中
+                for (int i = 0; i < 100000; i++) {
+                    b.insert(i * threadNum + offset);
+                }
+                latch.countDown();
+            }).start();
+        }
+        latch.await();
+        Assert.assertEquals(32 * 100000, b.count());
+        Assert.assertTrue(b.contain(32 * 100000 - 1));
+        Assert.assertFalse(b.insert(5));
+        Assert.assertTrue(b.delete(5));
+        Assert.assertFalse(b.contain(5));
+    }
+
+    /**
+     * 多个bitmap之间的集合运算
+     */
+    @Test
+    public void testSetOperation() {
+        BitMap a = new BitMap(1000);
+        BitMap b = new BitMap(2000);
+        for (int i = 0; i < 1000; i += 2) {
+            a.insert(i);
+        }
+        for (int i = 0; i < 2000; i += 3) {
+            b.insert(i);
+        }
+
+        // 6的倍数
+        BitMap and = BitMap.and(a, b);
+        Assert.assertEquals(167, and.count());
+        Assert.assertEquals(167, BitMap.andCardinality(a, b));
+        Assert.assertTrue(and.contain(6));
+        Assert.assertFalse(and.contain(4));
+
+        BitMap or = BitMap.or(a, b);
+        Assert.assertEquals(500 + 667 - 167, or.count());
+        Assert.assertEquals(or.count(), BitMap.orCardinality(a, b));
+        Assert.assertTrue(or.contain(1998));
+
+        Assert.assertEquals(or.count() - and.count(), BitMap.xor(a, b).count());
+        Assert.assertEquals(BitMap.xor(a, b).count(), BitMap.xorCardinality(a, b));
+        Assert.assertEquals(500 - 167, BitMap.andNot(a, b).count());
+        Assert.assertEquals(500 - 167, BitMap.andNotCardinality(a, b));
+
+        // 原地运算
+        a.orWith(b);
+        Assert.assertEquals(or.count(), a.count());
+        a.andNotWith(b);
+        Assert.assertEquals(500 - 167, a.count());
+        a.andWith(b);
+        Assert.assertEquals(0, a.count());
+    }
+
+    /**
+     * 个数统计：维护的个数与并行统计的个数一致
+     */
+    @Test
+    public void testCount() {
+        BitMap b = new BitMap(1 << 24);
+        for (int i = 0; i < 1 << 24; i += 5) {
+            b.insert(i);
+        }
+        // 重复插入和删除不存在的数据不影响个数
+        b.insert(0);
+        b.delete(1);
+        Assert.assertEquals(3355444, b.count());
+        Assert.assertEquals(b.count(), b.parallelCount());
+    }
+
+    /**
+     * 遍历、排名、选择和范围统计
+     */
+    @Test
+    public void testRankSelect() {
+        BitMap b = new BitMap(100000);
+        for (int i = 10; i < 100000; i += 10) {
+            b.insert(i);
+        }
+        Assert.assertEquals(20, b.nextSetBit(11));
+        Assert.assertEquals(10, b.previousSetBit(19));
+        Assert.assertEquals(-1, b.previousSetBit(9));
+
+        // 小于等于55的有10,20,...,50
+        Assert.assertEquals(5, b.rank(55));
+        Assert.assertEquals(60, b.select(5));
+        Assert.assertEquals(b.count(), b.rank(100000));
+        Assert.assertEquals(-1, b.select(b.count()));
+        Assert.assertEquals(10, b.rangeCardinality(1000, 1100));
+
+        List<Integer> dataList = new ArrayList<>();
+        b.forEach(dataList::add);
+        Assert.assertEquals(b.count(), dataList.size());
+        Assert.assertEquals(Integer.valueOf(99990), dataList.get(dataList.size() - 1));
+
+        // 修改之后排名会重新计算
+        b.delete(10);
+        Assert.assertEquals(4, b.rank(55));
+    }
+
+    /**
+     * 内存映射的bitmap，重新打开之后数据还在
+     */
+    @Test
+    @SneakyThrows
+    public void testMapped() {
+        File file = File.createTempFile("bitmap", ".bin");
+        file.deleteOnExit();
+        try (MappedBitMap b = new MappedBitMap(file.getAbsolutePath(), 1000)) {
+            b.insert(7);
+            b.insert(999);
+            b.delete(7);
+            b.force();
+        }
+
+        // 重新映射，容量变大数据也保留
+        try (MappedBitMap b = new MappedBitMap(file.getAbsolutePath(), 10000)) {
+            Assert.assertTrue(b.contain(999));
+            Assert.assertFalse(b.contain(7));
+            Assert.assertEquals(1, b.count());
+            b.insert(9999);
+            Assert.assertEquals(2, b.recount());
+        }
+    }
+
+    /**
+     * 自动扩容和释放内存
+     */
+    @Test
+    public void testResize() {
+        BitMap b = new BitMap(64);
+        b.insert(10);
+        // 超过最大值自动扩容，原有数据保留
+        b.insert(10 * 1000 * 1000);
+        Assert.assertTrue(b.contain(10));
+        Assert.assertTrue(b.contain(10 * 1000 * 1000));
+
+        b.setMaxValue(100 * 1000 * 1000);
+        Assert.assertEquals(2, b.count());
+
+        long before = b.memoryUsage();
+        b.delete(10 * 1000 * 1000);
+        b.trim();
+        Assert.assertTrue(b.memoryUsage() < before);
+        Assert.assertTrue(b.contain(10));
+        Assert.assertEquals(1, b.count());
+    }
 }
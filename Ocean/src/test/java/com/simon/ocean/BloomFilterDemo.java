@@ -1,9 +1,16 @@
 package com.simon.ocean;
 
 import static com.simon.ocean.Out.*;
-import com.google.common.hash.BloomFilter;
 import com.google.common.hash.Funnels;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.SneakyThrows;
+import org.junit.Assert;
 import org.junit.Test;
 
 /**
@@ -15,7 +22,7 @@ public class BloomFilterDemo {
     @Test
     public void testBloomFilter(){
         //CharSequence 是String的父类
-        BloomFilter<CharSequence> filter = BloomFilter.create(Funnels.stringFunnel(Charset.forName("utf-8")), 10000000, 0.001F);
+        com.google.common.hash.BloomFilter<CharSequence> filter = com.google.common.hash.BloomFilter.create(Funnels.stringFunnel(Charset.forName("utf-8")), 10000000, 0.001F);
         filter.put("asdf");
         if(filter.mightContain("asdf")){
             System.out.println("包含");
@@ -35,4 +42,228 @@ public class BloomFilterDemo {
         show(BloomFilterUtil.getBitsSizeOnGByte(n, p));
         show(BloomFilterUtil.getHashNum(BloomFilterUtil.getBitsSize(n, p), n));
     }
+
+    /**
+     * 自带的布隆过滤器，大小通过BloomFilterUtil计算
+     */
+    @Test
+    public void testNativeBloomFilter() {
+        int n = 100000;
+        BloomFilter<CharSequence> filter = BloomFilter.create(n, 0.01);
+        Assert.assertEquals(BloomFilterUtil.getHashNum(BloomFilterUtil.getBitsSize(n, 0.01), n), filter.getHashNum());
+
+        List<String> dataList = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            dataList.add("data" + i);
+        }
+        filter.putAll(dataList);
+        for (String data : dataList) {
+            Assert.assertTrue(filter.mightContain(data));
+        }
+
+        int misjudge = 0;
+        for (int i = 0; i < n; i++) {
+            if (filter.mightContain("other" + i)) {
+                misjudge++;
+            }
+        }
+        show("误判率：" + (double) misjudge / n + "，预估误判率：" + filter.expectedFpp());
+        Assert.assertTrue(misjudge < n * 0.02);
+    }
+
+    /**
+     * 多线程同时判重
+     */
+    @Test
+    @SneakyThrows
+    public void testConcurrentBloomFilter() {
+        int n = 100000;
+        ConcurrentBloomFilter<CharSequence> filter = ConcurrentBloomFilter.create(n, 0.001);
+        int threadNum = 8;
+        AtomicInteger newNum = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(threadNum);
+        for (int t = 0; t < threadNum; t++) {
+            new Thread(() -> {
+                for (int i = 0; i < n; i++) {
+                    if (filter.putIfAbsent("data" + i)) {
+                        newNum.incrementAndGet();
+                    }
+                }
+                latch.countDown();
+            }).start();
+        }
+        latch.await();
+
+        // 除了误判的，每个数据至少被一个线程判定为新数据
+        Assert.assertTrue(newNum.get() > n * 0.99);
+        Assert.assertTrue(filter.mightContain("data0"));
+        Assert.assertFalse(filter.putIfAbsent("data0"));
+    }
+
+    /**
+     * 可扩展的布隆过滤器：数据远超初始容量，误判率依然可控
+     */
+    @Test
+    public void testScalableBloomFilter() {
+        ScalableBloomFilter<CharSequence> filter = ScalableBloomFilter.create(1000, 0.01);
+        int n = 100000;
+        for (int i = 0; i < n; i++) {
+            filter.put("data" + i);
+        }
+        Assert.assertTrue(filter.getFilterNum() > 1);
+        Assert.assertTrue(filter.mightContain("data" + (n - 1)));
+        Assert.assertTrue(filter.expectedFpp() < 0.01);
+
+        int falseNum = 0;
+        for (int i = 0; i < n; i++) {
+            if (filter.mightContain("other" + i)) {
+                falseNum++;
+            }
+        }
+        show("实际的误判率：" + falseNum * 1.0 / n + "，预计的误判率：" + filter.expectedFpp());
+        Assert.assertTrue(falseNum * 1.0 / n < 0.01);
+    }
+
+    /**
+     * 计数布隆过滤器：支持删除
+     */
+    @Test
+    public void testCountingBloomFilter() {
+        CountingBloomFilter<CharSequence> filter = CountingBloomFilter.create(10000, 0.01);
+        filter.put("a");
+        filter.put("b");
+        Assert.assertTrue(filter.mightContain("a"));
+
+        Assert.assertTrue(filter.remove("a"));
+        Assert.assertFalse(filter.mightContain("a"));
+        Assert.assertTrue(filter.mightContain("b"));
+        Assert.assertEquals(1, filter.getCount());
+    }
+
+    /**
+     * 分块布隆过滤器与普通布隆过滤器的对比：误判率和查询耗时
+     * 数据量越大（位数组超过CPU缓存），分块的查询耗时优势越明显
+     */
+    @Test
+    public void testBlockedBloomFilterCompare() {
+        int n = 2000000;
+        BlockedBloomFilter<byte[]> blocked = new BlockedBloomFilter<>(n, 0.01, b -> b);
+        BloomFilter<byte[]> classic = new BloomFilter<>(n, 0.01, b -> b);
+        byte[][] keys = new byte[n][];
+        byte[][] others = new byte[n][];
+        for (int i = 0; i < n; i++) {
+            keys[i] = ("data" + i).getBytes();
+            others[i] = ("other" + i).getBytes();
+            blocked.put(keys[i]);
+            classic.put(keys[i]);
+        }
+
+        // 预热几轮之后再统计
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            int blockedMisjudge = 0;
+            for (byte[] other : others) {
+                if (blocked.mightContain(other)) {
+                    blockedMisjudge++;
+                }
+            }
+            long blockedCost = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int classicMisjudge = 0;
+            for (byte[] other : others) {
+                if (classic.mightContain(other)) {
+                    classicMisjudge++;
+                }
+            }
+            long classicCost = System.nanoTime() - start;
+
+            show("分块：" + blockedCost / n + "ns/次，误判率：" + (double) blockedMisjudge / n
+                + "；普通：" + classicCost / n + "ns/次，误判率：" + (double) classicMisjudge / n);
+        }
+        for (byte[] key : keys) {
+            Assert.assertTrue(blocked.mightContain(key));
+        }
+    }
+
+    @Test
+    public void testXorFilter() {
+        int n = 1000000;
+        List<String> dataList = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            dataList.add("data" + i);
+        }
+        XorFilter<CharSequence> filter = XorFilter.build(dataList);
+        for (String data : dataList) {
+            Assert.assertTrue(filter.mightContain(data));
+        }
+        int misjudge = 0;
+        for (int i = 0; i < n; i++) {
+            if (filter.mightContain("other" + i)) {
+                misjudge++;
+            }
+        }
+        // 误判率约为 1/256
+        Assert.assertTrue((double) misjudge / n < 0.006);
+        show("异或过滤器：" + (double) filter.getBitSize() / n + "位/个，误判率：" + (double) misjudge / n
+            + "；布隆过滤器同样误判率需要：" + (double) BloomFilterUtil.getBitsSize(n, 1.0 / 256) / n + "位/个");
+    }
+
+    @Test
+    public void testCuckooFilter() {
+        int n = 100000;
+        CuckooFilter<CharSequence> filter = CuckooFilter.create(n);
+        for (int i = 0; i < n; i++) {
+            Assert.assertTrue(filter.put("data" + i));
+        }
+        for (int i = 0; i < n; i++) {
+            Assert.assertTrue(filter.mightContain("data" + i));
+        }
+        for (int i = 0; i < n / 2; i++) {
+            Assert.assertTrue(filter.remove("data" + i));
+        }
+        for (int i = n / 2; i < n; i++) {
+            Assert.assertTrue(filter.mightContain("data" + i));
+        }
+        Assert.assertEquals(n / 2, filter.getCount());
+        int remain = 0;
+        for (int i = 0; i < n / 2; i++) {
+            if (filter.mightContain("data" + i)) {
+                remain++;
+            }
+        }
+        show("布谷鸟过滤器：负载：" + filter.loadFactor() + "，删除之后仍然判断存在：" + remain);
+    }
+
+    @Test
+    @SneakyThrows
+    public void testMappedBloomFilter() {
+        BloomFilter<CharSequence> filter = BloomFilter.create(100000, 0.01);
+        for (int i = 0; i < 100000; i++) {
+            filter.put("data" + i);
+        }
+        Path path = Files.createTempDirectory("bloom").resolve("blacklist.bloom");
+        filter.writeTo(path);
+
+        try (MappedBloomFilter<CharSequence> mapped = MappedBloomFilter.open(path)) {
+            Assert.assertEquals(filter.getBitSize(), mapped.getBitSize());
+            Assert.assertEquals(filter.getHashNum(), mapped.getHashNum());
+            Assert.assertEquals(filter.getInsertNum(), mapped.getInsertNum());
+            for (int i = 0; i < 100000; i++) {
+                Assert.assertTrue(mapped.mightContain("data" + i));
+                Assert.assertEquals(filter.mightContain("other" + i), mapped.mightContain("other" + i));
+            }
+        }
+
+        // 哈希函数的个数不在1~255之间的文件不能映射
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[16] = 0;
+        Files.write(path, bytes);
+        try {
+            MappedBloomFilter.open(path);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            show(e.getMessage());
+        }
+    }
 }
@@ -155,6 +155,27 @@ public class ConsistentHashUtilTest {
         tab();
     }
 
+    /**
+     * 路由表在服务注册、删除和清理之后重建，每个位置都落在对应服务的范围内
+     */
+    @Test
+    public void testRoutingTable() {
+        service.clear();
+        Assert.assertNull(service.getServerName(1L));
+        testRegister();
+        service.deleteServer("3");
+
+        for (long id = 0; id < 1024; id++) {
+            String serverName = service.getServerName(id);
+            Assert.assertNotNull(serverName);
+            Assert.assertTrue(service.getRange(serverName).contain((int) id));
+        }
+        Assert.assertEquals(service.getServerName(5L), service.getServerName(5L + 1024));
+
+        service.clear();
+        Assert.assertNull(service.getServerName(5L));
+    }
+
 //    /**
 //     * 测试，删除数据后，在添加数据，和一次性输入数据的对比
 //     */
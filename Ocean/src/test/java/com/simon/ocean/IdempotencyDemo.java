@@ -2,9 +2,15 @@ package com.simon.ocean;
 
 import static com.simon.ocean.Out.*;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import lombok.SneakyThrows;
 import org.junit.Assert;
@@ -196,4 +202,316 @@ public class IdempotencyDemo {
             i++;
         }
     }
+
+    /**
+     * 多线程同时判断，每个数据第一次不包含，第二次包含
+     */
+    @Test
+    @SneakyThrows
+    public void testConcurrentContain() {
+        Idempotency idem = Idempotency.builder("concurrentContain").expire(60, TimeUnit.SECONDS).maxDataSize(100 * 10000).build();
+        try {
+            int threadNum = 8;
+            int num = 100000;
+            CountDownLatch latch = new CountDownLatch(threadNum);
+            long start = System.currentTimeMillis();
+            for (int t = 0; t < threadNum; t++) {
+                int threadIndex = t;
+                new Thread(() -> {
+                    for (int i = 0; i < num; i++) {
+                        String data = "concurrent-" + threadIndex + "-" + i;
+                        Assert.assertFalse(idem.contain(data));
+                        Assert.assertTrue(idem.contain(data));
+                    }
+                    latch.countDown();
+                }).start();
+            }
+            latch.await();
+            show("耗时：" + (System.currentTimeMillis() - start) + "ms");
+        } finally {
+            idem.close();
+        }
+    }
+
+    /**
+     * 自定义key的生成策略：只按照业务的唯一标识判断
+     */
+    @Test
+    public void testKeyStrategy() {
+        Idempotency idem = Idempotency.builder("keyStrategy").expire(60, TimeUnit.SECONDS)
+            .keyStrategy((objects, hasher) -> hasher.putChars("order").putLong((Long) objects[0])).build();
+        try {
+            Assert.assertFalse(idem.contain(10086L, "first"));
+            Assert.assertTrue(idem.contain(10086L, "second"));
+
+            idem.setKeyStrategy(IdempotencyKeyStrategy.DEFAULT);
+            Assert.assertFalse(idem.contain(10086L, "first"));
+        } finally {
+            idem.close();
+        }
+    }
+
+    /**
+     * 堆外存储：按照最大的数据个数一次分配好直接内存
+     */
+    @Test
+    public void testOffHeap() {
+        Idempotency idem = Idempotency.builder("offHeap").expire(60, TimeUnit.SECONDS).maxDataSize(20 * 10000)
+            .offHeap(true).build();
+        try {
+            int num = 10 * 10000;
+            long start = System.currentTimeMillis();
+            for (int i = 0; i < num; i++) {
+                Assert.assertFalse(idem.contain("offHeap", i));
+            }
+            for (int i = 0; i < num; i++) {
+                Assert.assertTrue(idem.contain("offHeap", i));
+            }
+            show("耗时：" + (System.currentTimeMillis() - start) + "ms");
+            Assert.assertEquals(num, idem.size());
+        } finally {
+            idem.close();
+        }
+    }
+
+    /**
+     * 超过最大值之后按照LRU淘汰：一直在访问的数据不会被冷数据的扫描淘汰
+     */
+    @Test
+    public void testEvictionLru() {
+        Idempotency idem = Idempotency.builder("evictionLru").expire(60, TimeUnit.SECONDS).maxDataSize(1000)
+            .evictionPolicy(IdempotencyEvictionPolicy.LRU).build();
+        try {
+            for (int i = 0; i < 100; i++) {
+                idem.contain("hot", i);
+            }
+            // 冷数据的扫描过程中一直在访问的热数据不淘汰
+            for (int i = 0; i < 5000; i++) {
+                Assert.assertFalse(idem.contain("cold", i));
+                if (i % 10 == 0) {
+                    for (int j = 0; j < 100; j++) {
+                        Assert.assertTrue(idem.contain("hot", j));
+                    }
+                }
+            }
+            Assert.assertTrue(idem.size() <= 1000);
+        } finally {
+            idem.close();
+        }
+    }
+
+    /**
+     * 超过最大值之后按照FIFO淘汰：最早过期的数据先淘汰
+     */
+    @Test
+    @SneakyThrows
+    public void testEvictionFifo() {
+        Idempotency idem = Idempotency.builder("evictionFifo").expire(60, TimeUnit.SECONDS).maxDataSize(1000)
+            .evictionPolicy(IdempotencyEvictionPolicy.FIFO).build();
+        try {
+            for (int i = 0; i < 100; i++) {
+                idem.contain("early", i);
+            }
+            Thread.sleep(20);
+            // 最早过期的数据先淘汰，访问也不会延长过期时间
+            for (int i = 0; i < 5000; i++) {
+                Assert.assertFalse(idem.contain("late", i));
+                if (i % 10 == 0) {
+                    idem.contain("early", 0);
+                }
+            }
+            // 采样淘汰，最新的数据绝大部分还在
+            int kept = 0;
+            for (int i = 4900; i < 5000; i++) {
+                if (idem.contain("late", i)) {
+                    kept++;
+                }
+            }
+            Assert.assertTrue(kept >= 80);
+            for (int i = 1; i < 100; i++) {
+                Assert.assertFalse(idem.contain("early", i));
+            }
+        } finally {
+            idem.close();
+        }
+    }
+
+    /**
+     * 超过最大值之后按照TinyLFU淘汰：频率高的数据留下，新数据先进入准入窗口
+     */
+    @Test
+    public void testEvictionTinyLfu() {
+        Idempotency idem = Idempotency.builder("evictionTinyLfu").expire(60, TimeUnit.SECONDS).maxDataSize(1000)
+            .evictionPolicy(IdempotencyEvictionPolicy.TINY_LFU).build();
+        try {
+            for (int n = 0; n < 10; n++) {
+                for (int i = 0; i < 100; i++) {
+                    idem.contain("hot", i);
+                }
+            }
+            // 数据满了之后新的key先进入准入窗口，马上重复的请求仍然能判断为重复
+            for (int i = 0; i < 5000; i++) {
+                Assert.assertFalse(idem.contain("cold", i));
+                Assert.assertTrue(idem.contain("cold", i));
+            }
+            // 频率高的热数据不会被只访问过两次的冷数据淘汰
+            for (int i = 0; i < 100; i++) {
+                Assert.assertTrue(idem.contain("hot", i));
+            }
+        } finally {
+            idem.close();
+        }
+    }
+
+    /**
+     * 第三方存储的批量插入回调：超过最大值的数据合并之后批量写入
+     */
+    @Test
+    @SneakyThrows
+    public void testInsertAllHook() {
+        Idempotency idem = Idempotency.builder("insertAllHook").expire(60, TimeUnit.SECONDS).maxDataSize(10).build();
+        try {
+            Map<String, Long> otherMap = new ConcurrentHashMap<>();
+            idem.setWriteBehind(100, 20, 1000, 10, TimeUnit.MILLISECONDS);
+            idem.registerInsertAllHook(entryList -> {
+                show("三方批量增加数据：" + entryList.size());
+                entryList.forEach(entry -> otherMap.put(entry.getKey(), entry.getValue()));
+            });
+            idem.registerSelectHook(otherMap::get);
+
+            for (int i = 0; i < 2000; i++) {
+                idem.contain("writeBehind" + i);
+            }
+            Thread.sleep(500);
+
+            IdempotencyWriteBehind writeBehind = idem.getWriteBehind();
+            show("提交：" + writeBehind.getSubmittedCount() + "，写入：" + writeBehind.getFlushedCount()
+                + "，批次：" + writeBehind.getBatchCount() + "，丢弃：" + writeBehind.getDroppedCount());
+            Assert.assertEquals(writeBehind.getSubmittedCount(), writeBehind.getFlushedCount() + writeBehind.getDroppedCount());
+        } finally {
+            idem.close();
+        }
+    }
+
+    /**
+     * 已经存在的数据走一次查找，时间取粗粒度的时钟
+     */
+    @Test
+    public void testCheckAndMark() {
+        Idempotency idem = Idempotency.builder("checkAndMark").expire(60, TimeUnit.SECONDS).build();
+        try {
+            Assert.assertFalse(idem.contain("checkAndMark", 1));
+            long start = System.nanoTime();
+            for (int i = 0; i < 100 * 10000; i++) {
+                Assert.assertTrue(idem.contain("checkAndMark", 1));
+            }
+            show("重复数据的判断：" + (System.nanoTime() - start) / (100 * 10000) + " ns/次");
+            Assert.assertTrue(Math.abs(CoarseClock.currentTimeMillis() - System.currentTimeMillis()) < 1000);
+        } finally {
+            idem.close();
+        }
+    }
+
+    /**
+     * 本地快照：新增的数据定时追加到文件，重启之后从文件预热
+     */
+    @Test
+    @SneakyThrows
+    public void testSnapshot() {
+        Path path = Files.createTempDirectory("idempotency").resolve("idempotency.snapshot");
+        Idempotency idem = Idempotency.builder("snapshot").expire(60, TimeUnit.SECONDS).build();
+        try {
+            idem.enableSnapshot(path, 100, TimeUnit.MILLISECONDS);
+            for (int i = 0; i < 1000; i++) {
+                Assert.assertFalse(idem.contain("snapshot", i));
+            }
+            idem.disableSnapshot();
+            show("快照文件大小：" + Files.size(path));
+            Assert.assertEquals(8 + 1000 * 24, Files.size(path));
+        } finally {
+            idem.close();
+        }
+
+        // 新的实例（相当于重启）从文件中预热
+        Idempotency restarted = Idempotency.builder("snapshot").expire(60, TimeUnit.SECONDS).build();
+        try {
+            restarted.enableSnapshot(path, 100, TimeUnit.MILLISECONDS);
+            for (int i = 0; i < 1000; i++) {
+                Assert.assertTrue(restarted.contain("snapshot", i));
+            }
+        } finally {
+            restarted.close();
+        }
+    }
+
+    /**
+     * 批量判断：一批数据一次计算哈希，本地没有的数据一次批量查询第三方
+     */
+    @Test
+    public void testContainAll() {
+        Idempotency idem = Idempotency.builder("containAll").expire(60, TimeUnit.SECONDS).build();
+        try {
+            List<Object> messageList = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                messageList.add("containAll" + (i % 400));
+            }
+            BitSet duplicates = idem.containAll(messageList);
+            show("批量的重复个数：" + duplicates.cardinality());
+            Assert.assertEquals(100, duplicates.cardinality());
+            Assert.assertEquals(400, duplicates.nextSetBit(0));
+
+            duplicates = idem.containAll(messageList);
+            Assert.assertEquals(500, duplicates.cardinality());
+        } finally {
+            idem.close();
+        }
+
+        // 本地已满的时候，同一批中后出现的相同数据仍然为重复
+        Idempotency full = Idempotency.builder("containAllFull").expire(60, TimeUnit.SECONDS).maxDataSize(100).build();
+        try {
+            for (int i = 0; i < 1000; i++) {
+                full.contain("containAllFill", i);
+            }
+            List<Object> messageList = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                messageList.add("containAllFull" + (i % 50));
+            }
+            BitSet duplicates = full.containAll(messageList);
+            Assert.assertEquals(50, duplicates.cardinality());
+            Assert.assertEquals(50, duplicates.nextSetBit(0));
+        } finally {
+            full.close();
+        }
+    }
+
+    /**
+     * 命名实例：各自的过期时间、最大个数和淘汰策略，互不影响
+     */
+    @Test
+    @SneakyThrows
+    public void testNamedInstance() {
+        Idempotency order = Idempotency.builder("order").expire(200, TimeUnit.MILLISECONDS).maxDataSize(1000).build();
+        Idempotency pay = Idempotency.builder("pay").expire(60, TimeUnit.SECONDS)
+            .evictionPolicy(IdempotencyEvictionPolicy.TINY_LFU).offHeap(true).build();
+        try {
+            Assert.assertSame(order, Idempotency.getInstance("order"));
+            Assert.assertFalse(order.contain("named"));
+            Assert.assertFalse(pay.contain("named"));
+            Assert.assertTrue(order.contain("named"));
+
+            for (int i = 0; i < 5000; i++) {
+                order.contain("named", i);
+            }
+            Assert.assertEquals(1000, order.size());
+
+            Thread.sleep(500);
+            Assert.assertFalse(order.contain("named"));
+            Assert.assertTrue(pay.contain("named"));
+            show("内存占用：" + Idempotency.memoryReport());
+        } finally {
+            order.close();
+            pay.close();
+        }
+        Assert.assertNull(Idempotency.getInstance("order"));
+    }
 }